@@ -0,0 +1,96 @@
+package com.miro.board.benchmarks;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.service.BoardsService;
+import com.miro.board.service.DefaultBoardsService;
+import com.miro.board.service.DefaultWidgetsService;
+import com.miro.board.service.WidgetsService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write throughput of one shared storage root versus one root per board.
+ * Every writer thread creates a widget on top and deletes it again, either on
+ * the shared board or on a board of its own. Run through {@link #main} to
+ * compare 1, 8 and 32 writer threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardContentionBenchmark {
+    private static final int BOARD_SIZE = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class SharedRoot {
+        private WidgetsService board;
+
+        @Setup(Level.Trial)
+        public void fillBoard() {
+            board = new DefaultWidgetsService();
+            fill(board);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Boards {
+        private BoardsService boardsService;
+
+        @Setup(Level.Trial)
+        public void createBoards() {
+            boardsService = new DefaultBoardsService(new DefaultWidgetsService(), boardId -> new DefaultWidgetsService());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OwnBoard {
+        private WidgetsService board;
+
+        @Setup(Level.Trial)
+        public void fillBoard(Boards boards) {
+            board = boards.boardsService.getOrCreateBoard(UUID.randomUUID().toString());
+            fill(board);
+        }
+    }
+
+    @Benchmark
+    public boolean sharedRoot(SharedRoot sharedRoot) {
+        return createAndDelete(sharedRoot.board);
+    }
+
+    @Benchmark
+    public boolean perBoardRoot(OwnBoard ownBoard) {
+        return createAndDelete(ownBoard.board);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 8, 32}) {
+            Options options = new OptionsBuilder()
+                    .include(BoardContentionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+
+    private static boolean createAndDelete(WidgetsService board) {
+        Widget widget = board.createWidget(new WidgetDTO(0, 0, null, 10, 10));
+
+        return board.deleteWidget(widget.getId());
+    }
+
+    private static void fill(WidgetsService board) {
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            board.createWidget(new WidgetDTO(i, i, null, 10, 10));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.miro.board.benchmarks;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.service.BatchingWidgetsService;
+import com.miro.board.service.ColumnarWidgetsService;
+import com.miro.board.service.DefaultWidgetsService;
+import com.miro.board.service.WidgetsService;
+
+final class Boards {
+    private Boards() {
+    }
+
+    static WidgetsService create(String engine) {
+        switch (engine) {
+            case "default":
+                return new DefaultWidgetsService();
+            case "batching":
+                return new BatchingWidgetsService();
+            case "columnar":
+                return new ColumnarWidgetsService();
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
+    /**
+     * Fills the board with widgets at z = 1..size, returning their ids in z order.
+     */
+    static String[] fill(WidgetsService board, int size) {
+        String[] ids = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            Widget widget = board.createWidget(new WidgetDTO(i % 4096, i / 4096, null, 10, 10));
+            ids[i] = widget.getId();
+        }
+
+        return ids;
+    }
+
+    static void close(WidgetsService board) throws Exception {
+        if (board instanceof AutoCloseable) {
+            ((AutoCloseable) board).close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.miro.board.benchmarks;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.storage.WidgetsSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placing a widget on top of a board of the given size.
+ * The score should stay flat as the board grows from 1k to 1M widgets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultZBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int boardSize;
+
+    private WidgetsSnapshot snapshot;
+    private String topWidgetId;
+
+    @Setup(Level.Trial)
+    public void fillBoard() {
+        snapshot = WidgetsSnapshot.EMPTY;
+
+        for (int z = 1; z <= boardSize; z++) {
+            Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), z, z, z, 10, 10);
+            snapshot = snapshot.withWidget(widget);
+            topWidgetId = widget.getId();
+        }
+    }
+
+    @Benchmark
+    public int nextZ() {
+        return snapshot.nextZ(null);
+    }
+
+    @Benchmark
+    public int nextZExcludingTopWidget() {
+        return snapshot.nextZ(topWidgetId);
+    }
+
+    @Benchmark
+    public WidgetsSnapshot createOnTop() {
+        return snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, snapshot.nextZ(null), 10, 10));
+    }
+}
@@ -0,0 +1,38 @@
+package com.miro.board.benchmarks;
+
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.service.WidgetsService;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Random;
+
+/**
+ * Prints the heap retained per widget by the default and columnar engines, and the classes it
+ * goes to, as measured by JOL. Widgets are spread over distinct z and large coordinates, so boxed
+ * values are not served from the {@code Integer} cache. Not a JMH benchmark; run it through {@link #main}.
+ */
+public final class HeapFootprintReport {
+    private static final int BOARD_SIZE = 20_000;
+
+    private HeapFootprintReport() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String engine : new String[]{"default", "columnar"}) {
+            WidgetsService board = Boards.create(engine);
+            Random random = new Random(17);
+            long emptyBytes = GraphLayout.parseInstance(board).totalSize();
+
+            for (int i = 0; i < BOARD_SIZE; i++) {
+                board.createWidget(new WidgetDTO(random.nextInt(1_000_000), random.nextInt(1_000_000),
+                        null, 1_000 + random.nextInt(1_000), 1_000 + random.nextInt(1_000)));
+            }
+
+            GraphLayout layout = GraphLayout.parseInstance(board);
+
+            System.out.printf("%s: %d bytes per widget%n%s%n", engine,
+                    (layout.totalSize() - emptyBytes) / BOARD_SIZE, layout.toFootprint());
+            Boards.close(board);
+        }
+    }
+}
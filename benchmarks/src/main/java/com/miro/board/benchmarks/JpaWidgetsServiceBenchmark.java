@@ -0,0 +1,85 @@
+package com.miro.board.benchmarks;
+
+import com.miro.board.Application;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
+import com.miro.board.service.WidgetsService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of durability: the H2-backed engine against the in-memory one on the same operations.
+ * Writes either delete what they create or move an existing widget, so the board keeps its size;
+ * random z moves open gaps over time, which shortens shift runs equally for both engines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JpaWidgetsServiceBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000", "10000", "100000"})
+    private int boardSize;
+
+    @Param({"default", "jpa"})
+    private String engine;
+
+    private ConfigurableApplicationContext context;
+    private WidgetsService board;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void fillBoard() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("jpa")
+                .run("--widgets.storage=" + engine,
+                        "--spring.datasource.url=jdbc:h2:mem:widgets-benchmark",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop");
+
+        board = context.getBean(WidgetsService.class);
+        ids = Boards.fill(board, boardSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeBoard() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean createAndDeleteOnTop() {
+        Widget widget = board.createWidget(new WidgetDTO(0, 0, null, 10, 10));
+
+        return board.deleteWidget(widget.getId());
+    }
+
+    @Benchmark
+    public Widget updateZ() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int z = 1 + random.nextInt(boardSize);
+
+        return board.updateWidget(ids[random.nextInt(boardSize)], new WidgetDTO(0, 0, z, 10, 10));
+    }
+
+    @Benchmark
+    public Widget getWidget() {
+        return board.getWidget(ids[ThreadLocalRandom.current().nextInt(boardSize)]);
+    }
+
+    @Benchmark
+    public WidgetsPage getWidgetsPage() {
+        int z = ThreadLocalRandom.current().nextInt(boardSize);
+
+        return board.getWidgets((z == 0) ? null : new WidgetsCursor(z, ids[z - 1]), PAGE_SIZE);
+    }
+}
@@ -0,0 +1,48 @@
+package com.miro.board.benchmarks;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.storage.WidgetsSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserting a widget at the bottom of a contiguous run of {@code runLength} widgets.
+ * The rest of the board sits behind a gap. Runs are shifted lazily,
+ * so the score should grow only logarithmically with both parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShiftCascadeBenchmark {
+    @Param({"10000", "1000000"})
+    private int boardSize;
+
+    @Param({"1", "10", "100", "1000"})
+    private int runLength;
+
+    private WidgetsSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void fillBoard() {
+        snapshot = WidgetsSnapshot.EMPTY;
+
+        for (int z = 1; z <= runLength; z++) {
+            snapshot = snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), z, z, z, 10, 10));
+        }
+
+        for (int i = runLength; i < boardSize; i++) {
+            int z = runLength + 2 + (i - runLength) * 2;
+            snapshot = snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), z, z, z, 10, 10));
+        }
+    }
+
+    @Benchmark
+    public WidgetsSnapshot insertAtBottomOfRun() {
+        return snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 10, 10));
+    }
+}
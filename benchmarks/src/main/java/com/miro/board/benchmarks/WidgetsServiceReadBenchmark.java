@@ -0,0 +1,83 @@
+package com.miro.board.benchmarks;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
+import com.miro.board.service.WidgetsService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads against a board of the given size that does not change during the trial.
+ * {@code getWidgets} walks the whole board, so its score is expected to be linear;
+ * the others should stay flat. Run through {@link #main} for 1 and 8 reader threads
+ * with GC profiling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WidgetsServiceReadBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int boardSize;
+
+    @Param({"default", "batching"})
+    private String engine;
+
+    private WidgetsService board;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void fillBoard() {
+        board = Boards.create(engine);
+        ids = Boards.fill(board, boardSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeBoard() throws Exception {
+        Boards.close(board);
+    }
+
+    @Benchmark
+    public Widget getWidget() {
+        return board.getWidget(ids[ThreadLocalRandom.current().nextInt(boardSize)]);
+    }
+
+    @Benchmark
+    public void getWidgets(Blackhole blackhole) {
+        for (Widget widget : board.getWidgets()) {
+            blackhole.consume(widget);
+        }
+    }
+
+    @Benchmark
+    public WidgetsPage getWidgetsPage() {
+        int z = ThreadLocalRandom.current().nextInt(boardSize);
+
+        return board.getWidgets((z == 0) ? null : new WidgetsCursor(z, ids[z - 1]), PAGE_SIZE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 8}) {
+            Options options = new OptionsBuilder()
+                    .include(WidgetsServiceReadBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.miro.board.benchmarks;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.service.WidgetsService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes against a board of the given size with widgets at z = 1..boardSize, so every
+ * collision shifts everything above it. Writes change the board, so the board is rebuilt
+ * before each iteration and every iteration times a fixed batch of operations per thread.
+ * Run through {@link #main} for 1 and 8 writer threads with GC profiling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = WidgetsServiceWriteBenchmark.BATCH_SIZE)
+@Measurement(iterations = 20, batchSize = WidgetsServiceWriteBenchmark.BATCH_SIZE)
+@Fork(1)
+public class WidgetsServiceWriteBenchmark {
+    static final int BATCH_SIZE = 100;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int boardSize;
+
+    @Param({"default", "batching"})
+    private String engine;
+
+    private WidgetsService board;
+    private String[] ids;
+    private final AtomicInteger deleted = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void fillBoard() {
+        board = Boards.create(engine);
+        ids = Boards.fill(board, boardSize);
+        deleted.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeBoard() throws Exception {
+        Boards.close(board);
+    }
+
+    @Benchmark
+    public Widget createOnTop() {
+        return board.createWidget(new WidgetDTO(0, 0, null, 10, 10));
+    }
+
+    @Benchmark
+    public Widget createWithCollision() {
+        int z = 1 + ThreadLocalRandom.current().nextInt(boardSize);
+
+        return board.createWidget(new WidgetDTO(0, 0, z, 10, 10));
+    }
+
+    @Benchmark
+    public Widget updateZ() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int z = 1 + random.nextInt(boardSize);
+
+        return board.updateWidget(ids[random.nextInt(boardSize)], new WidgetDTO(0, 0, z, 10, 10));
+    }
+
+    @Benchmark
+    public boolean delete() {
+        return board.deleteWidget(ids[deleted.getAndIncrement()]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 8}) {
+            Options options = new OptionsBuilder()
+                    .include(WidgetsServiceWriteBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.miro.board.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a full-board response in JSON and in CBOR. Payload sizes are compared by
+ * {@code WidgetsWireFormatTest}; this measures the time. Run with {@code -prof gc} to see
+ * what each format allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WidgetsWireFormatBenchmark {
+    @Param({"1000", "100000"})
+    private int boardSize;
+
+    @Param({"json", "cbor"})
+    private String format;
+
+    private ObjectWriter writer;
+    private List<Widget> widgets;
+
+    @Setup(Level.Trial)
+    public void fillBoard() {
+        ObjectMapper mapper = format.equals("cbor")
+                ? Jackson2ObjectMapperBuilder.cbor().build() : Jackson2ObjectMapperBuilder.json().build();
+        writer = mapper.writerFor(new TypeReference<List<Widget>>() {
+        });
+
+        Random random = new Random(17);
+        widgets = new ArrayList<>(boardSize);
+
+        for (int z = 0; z < boardSize; z++) {
+            widgets.add(new Widget(WidgetIdGenerator.UUIDS.nextId(), random.nextInt(1_000_000), random.nextInt(1_000_000), z,
+                    1_000 + random.nextInt(1_000), 1_000 + random.nextInt(1_000)));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeBoard() throws IOException {
+        return writer.writeValueAsBytes(widgets);
+    }
+}
@@ -1,10 +1,54 @@
 package com.miro.board;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.miro.board.controller.WidgetJsonCache;
+import com.miro.board.controller.WidgetsChangePublisher;
+import com.miro.board.model.SnowflakeIdGenerator;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.model.WidgetIdStrategy;
+import com.miro.board.repository.BoardsRepository;
+import com.miro.board.repository.WidgetsRepository;
+import com.miro.board.service.BatchingWidgetsService;
+import com.miro.board.service.BoardsService;
+import com.miro.board.service.ColumnarWidgetsService;
+import com.miro.board.service.DefaultBoardsService;
 import com.miro.board.service.DefaultWidgetsService;
+import com.miro.board.service.JpaWidgetsService;
+import com.miro.board.service.MicrometerWidgetsMetrics;
+import com.miro.board.service.OffHeapWidgetsService;
 import com.miro.board.service.WidgetsService;
+import com.miro.board.storage.FsyncPolicy;
+import com.miro.board.storage.WidgetsLog;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 @SpringBootApplication
 public class Application {
@@ -12,8 +56,193 @@ public class Application {
         SpringApplication.run(Application.class, args);
     }
 
+    /**
+     * Ids of new widgets, handed to every board. Existing widgets keep their ids, so switching
+     * strategies is safe.
+     */
+    @Bean
+    public WidgetIdGenerator widgetIdGenerator(@Value("${widgets.id.strategy}") WidgetIdStrategy strategy,
+                                               @Value("${widgets.id.node}") int node) {
+        return (strategy == WidgetIdStrategy.SNOWFLAKE) ? new SnowflakeIdGenerator(node) : WidgetIdGenerator.UUIDS;
+    }
+
+    /**
+     * Default engine; unless metrics are disabled, the boards listed in {@code widgets.metrics.boards}
+     * publish their writes to Micrometer.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "widgets.storage", havingValue = "default", matchIfMissing = true)
+    public Function<String, WidgetsService> defaultWidgetsServiceFactory(
+            WidgetIdGenerator idGenerator,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${widgets.metrics.enabled}") boolean metricsEnabled,
+            @Value("${widgets.metrics.boards}") Set<String> metricBoards,
+            @Value("${widgets.metrics.histograms}") boolean histograms,
+            @Value("${widgets.changes.log-size}") int changeLogSize) {
+        MeterRegistry registry = metricsEnabled ? meterRegistry.getIfAvailable() : null;
+
+        return boardId -> new DefaultWidgetsService(
+                MicrometerWidgetsMetrics.forBoard(registry, boardId, metricBoards, histograms), changeLogSize, idGenerator);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "widgets.storage", havingValue = "batching")
+    public Function<String, WidgetsService> batchingWidgetsServiceFactory(WidgetIdGenerator idGenerator) {
+        return boardId -> new BatchingWidgetsService(BatchingWidgetsService.DEFAULT_QUEUE_CAPACITY, null, idGenerator);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "widgets.storage", havingValue = "columnar")
+    public Function<String, WidgetsService> columnarWidgetsServiceFactory(WidgetIdGenerator idGenerator) {
+        return boardId -> new ColumnarWidgetsService(idGenerator);
+    }
+
+    /**
+     * Off-heap engine; each board publishes its memory usage as an MBean
+     * named {@code com.miro.board:type=OffHeapWidgets,board=<board id>}.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "widgets.storage", havingValue = "off-heap")
+    public Function<String, WidgetsService> offHeapWidgetsServiceFactory(
+            WidgetIdGenerator idGenerator,
+            @Value("${widgets.off-heap.initial-capacity}") int initialCapacity) {
+        return boardId -> {
+            OffHeapWidgetsService widgetsService = new OffHeapWidgetsService(initialCapacity, idGenerator);
+
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(widgetsService,
+                        new ObjectName("com.miro.board:type=OffHeapWidgets,board=" + ObjectName.quote(boardId)));
+            } catch (JMException ex) {
+                throw new IllegalStateException("Cannot register memory usage of board " + boardId, ex);
+            }
+
+            return widgetsService;
+        };
+    }
+
+    /**
+     * Boards of the {@code durable} engine that have a directory, which their first write creates.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "widgets.storage", havingValue = "durable")
+    public Predicate<String> durableStoredBoards(@Value("${widgets.wal.directory}") String directory) {
+        Path root = Paths.get(directory);
+
+        return boardId -> Files.isDirectory(boardDirectory(root, boardId));
+    }
+
+    /**
+     * Batching engine that logs every board to its own directory under {@code widgets.wal.directory}.
+     * Directory names are encoded board ids, so any board id maps to a safe file name.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "widgets.storage", havingValue = "durable")
+    public Function<String, WidgetsService> durableWidgetsServiceFactory(
+            WidgetIdGenerator idGenerator,
+            @Value("${widgets.wal.directory}") String directory,
+            @Value("${widgets.wal.fsync}") FsyncPolicy fsyncPolicy,
+            @Value("${widgets.wal.fsync-interval-ms}") long fsyncIntervalMillis,
+            @Value("${widgets.wal.snapshot-threshold}") int snapshotThreshold) {
+        Path root = Paths.get(directory);
+
+        return boardId -> new BatchingWidgetsService(BatchingWidgetsService.DEFAULT_QUEUE_CAPACITY,
+                WidgetsLog.open(boardDirectory(root, boardId), fsyncPolicy, fsyncIntervalMillis, snapshotThreshold),
+                idGenerator);
+    }
+
+    private static Path boardDirectory(Path root, String boardId) {
+        return root.resolve(Base64.getUrlEncoder().encodeToString(boardId.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Boards of the {@code jpa} engine that have rows; other boards are not opened by reads.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "widgets.storage", havingValue = "jpa")
+    public Predicate<String> jpaStoredBoards(WidgetsRepository widgetsRepository) {
+        return widgetsRepository::existsByBoardId;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "widgets.storage", havingValue = "jpa")
+    public Function<String, WidgetsService> jpaWidgetsServiceFactory(WidgetIdGenerator idGenerator,
+                                                                     BoardsRepository boardsRepository,
+                                                                     WidgetsRepository widgetsRepository,
+                                                                     PlatformTransactionManager transactionManager) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        return boardId -> new JpaWidgetsService(boardId, boardsRepository, widgetsRepository,
+                transactionTemplate, idGenerator);
+    }
+
+    @Bean
+    public WidgetsService widgetsService(Function<String, WidgetsService> widgetsServiceFactory) {
+        return widgetsServiceFactory.apply(DefaultBoardsService.DEFAULT_BOARD_ID);
+    }
+
+    /**
+     * Boards by id. With an engine that stores boards, reads open stored boards, and boards idle for
+     * {@code widgets.boards.idle-timeout} without subscribers are closed; other boards stay in memory.
+     */
+    @Bean
+    public BoardsService boardsService(WidgetsService widgetsService,
+                                       Function<String, WidgetsService> widgetsServiceFactory,
+                                       ObjectProvider<Predicate<String>> storedBoards,
+                                       WidgetsChangePublisher changePublisher,
+                                       @Value("${widgets.boards.idle-timeout}") Duration idleTimeout) {
+        Predicate<String> stored = storedBoards.getIfAvailable();
+
+        return (stored == null) ? new DefaultBoardsService(widgetsService, widgetsServiceFactory)
+                : new DefaultBoardsService(widgetsService, widgetsServiceFactory, stored,
+                changePublisher::hasSubscribers, idleTimeout.toMillis());
+    }
+
+    /**
+     * Serialized JSON of widgets, spliced into read responses; a max size of 0 disables it.
+     */
+    @Bean
+    public WidgetJsonCache widgetJsonCache(ObjectMapper objectMapper,
+                                           @Value("${widgets.json-cache.max-size}") DataSize maxSize,
+                                           @Value("${widgets.json-cache.eviction}") WidgetJsonCache.Eviction eviction) {
+        return new WidgetJsonCache(objectMapper, maxSize.toBytes(), eviction);
+    }
+
+    /**
+     * Server-sent changes of boards, polled every {@code widgets.changes.interval}; sent on at most
+     * {@code widgets.changes.sender-threads} threads, or on virtual threads when requests run on them too.
+     */
+    @Bean
+    public WidgetsChangePublisher widgetsChangePublisher(@Value("${widgets.changes.interval}") Duration interval,
+                                                         @Value("${widgets.changes.timeout}") Duration timeout,
+                                                         @Value("${widgets.changes.sender-threads}") int senderThreads,
+                                                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        return new WidgetsChangePublisher(interval.toMillis(), timeout.toMillis(), senderThreads, virtualThreads);
+    }
+
+    /**
+     * Netty for the reactive stack ({@code reactive} profile); Tomcat stays on the classpath for the servlet one.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Where the reactive stack calls boards: in place for the engines that never wait, on a bounded
+     * elastic pool for the ones that take locks, queue writes or hit a disk or database.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public Scheduler widgetsScheduler(@Value("${widgets.storage}") String storage) {
+        return "default".equals(storage) ? Schedulers.immediate() : Schedulers.boundedElastic();
+    }
+
+    /**
+     * CBOR for clients sending or accepting {@code application/cbor}, with the same Jackson settings as JSON.
+     */
     @Bean
-    public WidgetsService widgetsService() {
-        return new DefaultWidgetsService();
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
     }
 }
@@ -0,0 +1,63 @@
+package com.miro.board.controller;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.exception.InvalidTagException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strong entity tags of boards and widgets, shared by the servlet and the reactive controllers.
+ * Board tags hold the board version plus a part random per instance, which keeps tags from
+ * matching after a restart, when in-memory boards count from zero again.
+ */
+final class BoardTags {
+    private final String instanceTag = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    /**
+     * Tag of a board version in one format, or {@code null} when the board has no version.
+     */
+    String boardTag(long version, String format) {
+        return (version < 0) ? null : '"' + instanceTag + '-' + Long.toHexString(version) + '-' + format + '"';
+    }
+
+    /**
+     * Version of a board tag in any format, or -1 when there is none or it was made by another
+     * instance. Throws {@link InvalidTagException} when it is not a board tag at all.
+     */
+    long taggedVersion(String tag) {
+        if (tag == null) {
+            return -1;
+        }
+
+        String[] parts = tag.replace("\"", "").split("-", -1);
+        long version;
+
+        try {
+            version = (parts.length == 3 && !parts[2].isEmpty()) ? Long.parseLong(parts[1], 16) : -1;
+        } catch (NumberFormatException ex) {
+            version = -1;
+        }
+
+        if (version < 0) {
+            throw new InvalidTagException(tag);
+        }
+
+        return parts[0].equals(instanceTag) ? version : -1;
+    }
+
+    /**
+     * Tag of one widget in one format, from every field that ends up in the response.
+     */
+    static String widgetTag(Widget widget, String format) {
+        LocalDateTime lastModified = widget.getLastModified();
+        long hash = lastModified.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + lastModified.getNano();
+
+        for (int value : new int[]{widget.getX(), widget.getY(), widget.getZ(), widget.getWidth(), widget.getHeight()}) {
+            hash = (hash ^ value) * 0x9e3779b97f4a7c15L;
+        }
+
+        return '"' + Long.toHexString(hash ^ (hash >>> 29)) + '-' + format + '"';
+    }
+}
@@ -0,0 +1,259 @@
+package com.miro.board.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetsBatch;
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
+import com.miro.board.model.exception.InvalidAreaException;
+import com.miro.board.model.exception.InvalidPageRequestException;
+import com.miro.board.service.BoardsService;
+import com.miro.board.service.WidgetsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import jakarta.validation.Valid;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * The endpoints of {@link WidgetsController} on the reactive stack, over the same boards. Boards
+ * are looked up and called on {@code widgetsScheduler}, so engines and board storage that wait
+ * never hold an event loop. Full-board reads are streamed as buffers of cached widget JSON, filled
+ * as the client takes them. CBOR is only served by the servlet stack.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping({"/widgets", "/boards/{boardId}/widgets"})
+public class ReactiveWidgetsController {
+    private final WidgetsService widgetsService;
+    private final BoardsService boardsService;
+    private final WidgetJsonCache widgetJsonCache;
+    private final WidgetsJsonWriter widgetsJsonWriter;
+    private final WidgetsChangePublisher changePublisher;
+    private final Scheduler widgetsScheduler;
+    private final ObjectMapper objectMapper;
+    private final BoardTags boardTags = new BoardTags();
+    private final ResyncLimiter resyncLimiter;
+
+    @Autowired
+    public ReactiveWidgetsController(WidgetsService widgetsService, BoardsService boardsService,
+                                     WidgetJsonCache widgetJsonCache, WidgetsChangePublisher changePublisher,
+                                     Scheduler widgetsScheduler, ObjectMapper objectMapper,
+                                     @Value("${widgets.changes.max-resyncs}") int maxResyncs) {
+        this.widgetsService = widgetsService;
+        this.boardsService = boardsService;
+        this.widgetJsonCache = widgetJsonCache;
+        this.widgetsJsonWriter = new WidgetsJsonWriter(widgetJsonCache);
+        this.changePublisher = changePublisher;
+        this.widgetsScheduler = widgetsScheduler;
+        this.objectMapper = objectMapper;
+        this.resyncLimiter = new ResyncLimiter(maxResyncs);
+    }
+
+    @GetMapping
+    public Flux<DataBuffer> getAll(@PathVariable(value = "boardId", required = false) String boardId,
+                                   @RequestParam(value = "x1", required = false) Integer x1,
+                                   @RequestParam(value = "y1", required = false) Integer y1,
+                                   @RequestParam(value = "x2", required = false) Integer x2,
+                                   @RequestParam(value = "y2", required = false) Integer y2,
+                                   ServerWebExchange exchange) {
+        Area area = WidgetsController.area(x1, y1, x2, y2);
+
+        return call(() -> modifiedWidgetsJson(boardId, area, exchange, true)).flatMapMany(buffers -> {
+            exchange.getResponse().getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+            return buffers;
+        });
+    }
+
+    @GetMapping(produces = WidgetsJsonWriter.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> streamAll(@PathVariable(value = "boardId", required = false) String boardId,
+                                      @RequestParam(value = "x1", required = false) Integer x1,
+                                      @RequestParam(value = "y1", required = false) Integer y1,
+                                      @RequestParam(value = "x2", required = false) Integer x2,
+                                      @RequestParam(value = "y2", required = false) Integer y2,
+                                      ServerWebExchange exchange) {
+        Area area = WidgetsController.area(x1, y1, x2, y2);
+
+        return call(() -> modifiedWidgetsJson(boardId, area, exchange, false)).flatMapMany(buffers -> buffers);
+    }
+
+    /**
+     * Same answers as {@link WidgetsController#getChanges}. A resync holds its permit until the
+     * response has been written or the client went away.
+     */
+    @GetMapping(value = "/changes", params = "since", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Void> getChanges(@PathVariable(value = "boardId", required = false) String boardId,
+                                 @RequestParam("since") String since,
+                                 ServerWebExchange exchange) {
+        long version = boardTags.taggedVersion(since);
+
+        return call(() -> board(boardId)).flatMap(board -> Mono.using(
+                () -> (version < 0) ? resyncLimiter.acquire() : ResyncLimiter.NO_PERMIT,
+                permit -> call(() -> board.getChanges(version)).flatMap(changes -> {
+                    ServerHttpResponse response = exchange.getResponse();
+                    String eTag = boardTags.boardTag(changes.getVersion(), "json");
+
+                    if (eTag != null) {
+                        response.getHeaders().setETag(eTag);
+                    }
+
+                    response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+                    return response.writeWith(call(() -> response.bufferFactory()
+                            .wrap(objectMapper.writeValueAsBytes(changes))));
+                }),
+                Runnable::run));
+    }
+
+    /**
+     * Same events as {@link WidgetsController#streamChanges}. An event is only handed over once
+     * the client asked for it; until then the publisher keeps merging changes into it, and the
+     * client's next request resumes it. No thread waits for the client meanwhile.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<WidgetsChanges>> streamChanges(
+            @PathVariable(value = "boardId", required = false) String boardId,
+            @RequestParam(value = "since", required = false) String since,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        long version = boardTags.taggedVersion((lastEventId == null) ? since : lastEventId);
+
+        // Subscribing reads the board, so it happens on the widgets scheduler as well
+        return call(() -> board(boardId)).flatMapMany(board -> Flux.<ServerSentEvent<WidgetsChanges>>create(sink -> {
+            WidgetsChangePublisher.Subscription subscription = changePublisher.subscribe(board, version,
+                    new WidgetsChangePublisher.Channel() {
+                        @Override
+                        public void send(WidgetsChanges changes) throws IOException {
+                            if (sink.isCancelled()) {
+                                throw new IOException("Change stream is closed");
+                            }
+
+                            sink.next(ServerSentEvent.builder(changes)
+                                    .id(boardTags.boardTag(changes.getVersion(), "json"))
+                                    .event(changes.isResync() ? "resync" : "changes")
+                                    .build());
+                        }
+
+                        @Override
+                        public boolean isReady() {
+                            return sink.requestedFromDownstream() > 0 || sink.isCancelled();
+                        }
+                    });
+
+            sink.onRequest(requested -> subscription.resume());
+            sink.onDispose(subscription::cancel);
+        })).take(Duration.ofMillis(changePublisher.getTimeoutMillis()));
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<WidgetsPage> getPage(@PathVariable(value = "boardId", required = false) String boardId,
+                                     @RequestParam("limit") int limit,
+                                     @RequestParam(value = "after", required = false) String after,
+                                     @RequestParam(value = "x1", required = false) Integer x1,
+                                     @RequestParam(value = "y1", required = false) Integer y1,
+                                     @RequestParam(value = "x2", required = false) Integer x2,
+                                     @RequestParam(value = "y2", required = false) Integer y2) {
+        if (limit <= 0 || limit > WidgetsController.MAX_PAGE_SIZE) {
+            throw new InvalidPageRequestException("Limit should be between 1 and " + WidgetsController.MAX_PAGE_SIZE);
+        }
+
+        if (WidgetsController.area(x1, y1, x2, y2) != null) {
+            throw new InvalidAreaException("Area filter cannot be combined with limit");
+        }
+
+        return call(() -> board(boardId).getWidgets((after == null) ? null : WidgetsCursor.decode(after), limit));
+    }
+
+    @GetMapping(value = "/{id}")
+    public Mono<ResponseEntity<byte[]>> get(@PathVariable(value = "boardId", required = false) String boardId,
+                                            @PathVariable("id") String id, ServerWebExchange exchange) {
+        return call(() -> {
+            WidgetsService board = board(boardId);
+            Widget widget = board.getWidget(id);
+
+            return exchange.checkNotModified(BoardTags.widgetTag(widget, "json")) ? null
+                    : ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(widgetJsonCache.getJson(widget, board.keepsWidgets()));
+        });
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<Widget> create(@PathVariable(value = "boardId", required = false) String boardId,
+                               @Valid @RequestBody WidgetDTO widgetDTO) {
+        return call(() -> boardToCreateOn(boardId, true).createWidget(widgetDTO));
+    }
+
+    @PostMapping(value = "/batch")
+    public Mono<List<Widget>> applyBatch(@PathVariable(value = "boardId", required = false) String boardId,
+                                         @Valid @RequestBody WidgetsBatch widgetsBatch) {
+        return call(() -> boardToCreateOn(boardId, widgetsBatch.createsWidgets()).applyBatch(widgetsBatch.getOperations()));
+    }
+
+    @PutMapping(value = "/{id}")
+    public Mono<Widget> update(@PathVariable(value = "boardId", required = false) String boardId,
+                               @PathVariable("id") String id, @Valid @RequestBody WidgetDTO widgetDTO) {
+        return call(() -> board(boardId).updateWidget(id, widgetDTO));
+    }
+
+    @DeleteMapping(value = "/{id}")
+    public Mono<Boolean> delete(@PathVariable(value = "boardId", required = false) String boardId,
+                                @PathVariable("id") String id) {
+        return call(() -> board(boardId).deleteWidget(id));
+    }
+
+    /**
+     * JSON of the widgets of a board in an area, as an array or as lines, or {@code null} when the
+     * client has the board's current version. Buffers are filled as the client takes them.
+     */
+    private Flux<DataBuffer> modifiedWidgetsJson(String boardId, Area area, ServerWebExchange exchange, boolean array) {
+        WidgetsService board = board(boardId);
+
+        if (exchange.checkNotModified(boardTags.boardTag(board.getVersion(), array ? "json" : "ndjson"))) {
+            return null;
+        }
+
+        Collection<Widget> widgets = WidgetsController.getWidgets(board, area);
+        DataBufferFactory bufferFactory = exchange.getResponse().bufferFactory();
+
+        return array ? widgetsJsonWriter.arrayBuffers(widgets, board.keepsWidgets(), bufferFactory)
+                : widgetsJsonWriter.lineBuffers(widgets, board.keepsWidgets(), bufferFactory);
+    }
+
+    private <T> Mono<T> call(Callable<T> action) {
+        return Mono.fromCallable(action).subscribeOn(widgetsScheduler);
+    }
+
+    private WidgetsService board(String boardId) {
+        return (boardId == null) ? widgetsService : boardsService.getBoard(boardId);
+    }
+
+    private WidgetsService boardToCreateOn(String boardId, boolean createsWidgets) {
+        if (boardId == null) {
+            return widgetsService;
+        }
+
+        return createsWidgets ? boardsService.getOrCreateBoard(boardId) : boardsService.getBoard(boardId);
+    }
+}
@@ -0,0 +1,37 @@
+package com.miro.board.controller;
+
+import com.miro.board.model.exception.TooManyResyncsException;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the one-shot resyncs running at once, shared by the servlet and the reactive controllers.
+ * A resync reads and serializes the whole board, and any tag from another instance asks for one,
+ * so clients polling with such tags are turned away instead of piling up whole-board responses.
+ */
+final class ResyncLimiter {
+    /**
+     * Stands in for a permit where a response is not a resync.
+     */
+    static final Runnable NO_PERMIT = () -> { };
+
+    private final int maxResyncs;
+    private final Semaphore permits;
+
+    ResyncLimiter(int maxResyncs) {
+        this.maxResyncs = maxResyncs;
+        this.permits = new Semaphore(maxResyncs);
+    }
+
+    /**
+     * Takes a permit, to be given back by running the result once the response has been written,
+     * or throws {@link TooManyResyncsException} when {@code maxResyncs} are running.
+     */
+    Runnable acquire() {
+        if (!permits.tryAcquire()) {
+            throw new TooManyResyncsException(maxResyncs);
+        }
+
+        return permits::release;
+    }
+}
@@ -0,0 +1,226 @@
+package com.miro.board.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.miro.board.model.Widget;
+
+import java.io.UncheckedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serialized JSON of widgets, keyed by widget instance. Widgets are immutable and replaced on
+ * every change, so an instance's JSON never goes stale; it only stops being asked for. Keys are
+ * weak, so a replaced widget is dropped once it is collected, and entries beyond
+ * {@code maxBytes} are evicted in insertion order ({@link Eviction#FIFO}) or giving recently read
+ * entries a second chance ({@link Eviction#LRU}, the CLOCK approximation of LRU).
+ *
+ * <p>Hits take no lock; misses and eviction are serialized, by a lock rather than a monitor so
+ * that virtual threads waiting for it do not pin their carriers.
+ * Sizes count the JSON plus an estimate of the entry overhead.
+ */
+public class WidgetJsonCache {
+    public enum Eviction {
+        FIFO,
+        LRU
+    }
+
+    static final int ENTRY_OVERHEAD = 96;
+
+    private final ObjectWriter widgetWriter;
+    private final long maxBytes;
+    private final Eviction eviction;
+
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> evictionQueue = new ArrayDeque<>();
+    private final ReferenceQueue<Widget> collectedWidgets = new ReferenceQueue<>();
+    private final Lock lock = new ReentrantLock();
+    private long size;
+
+    public WidgetJsonCache(ObjectMapper objectMapper, long maxBytes, Eviction eviction) {
+        this.widgetWriter = objectMapper.writerFor(Widget.class);
+        this.maxBytes = maxBytes;
+        this.eviction = eviction;
+    }
+
+    public byte[] getJson(Widget widget) {
+        return getJson(widget, true);
+    }
+
+    /**
+     * JSON of a widget, only looked up and kept in the cache when {@code cached}. Widgets read
+     * from engines that build them on every read are never asked for again, so they skip it.
+     */
+    public byte[] getJson(Widget widget, boolean cached) {
+        if (!cached) {
+            return serialize(widget);
+        }
+
+        Entry entry = entries.get(new Lookup(widget));
+
+        byte[] json = (entry == null) ? null : entry.json;
+
+        if (json != null) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+
+            return json;
+        }
+
+        json = serialize(widget);
+
+        if (json.length + ENTRY_OVERHEAD <= maxBytes) {
+            put(widget, json);
+        }
+
+        return json;
+    }
+
+    /**
+     * Bytes held by the cache, by the same estimate the bound is checked against.
+     */
+    public long size() {
+        lock.lock();
+
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(Widget widget, byte[] json) {
+        lock.lock();
+
+        try {
+            putLocked(widget, json);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void putLocked(Widget widget, byte[] json) {
+        for (Object collected; (collected = collectedWidgets.poll()) != null; ) {
+            remove(((Key) collected).entry);
+        }
+
+        if (evictionQueue.size() > 2 * entries.size() + 1024) {
+            evictionQueue.removeIf(queued -> queued.json == null);
+        }
+
+        Entry entry = new Entry(new Key(widget, collectedWidgets), json);
+        entry.key.entry = entry;
+
+        if (entries.putIfAbsent(entry.key, entry) != null) {
+            return;
+        }
+
+        evictionQueue.add(entry);
+        size += entry.size;
+
+        while (size > maxBytes) {
+            Entry oldest = evictionQueue.poll();
+
+            if (oldest.json == null) {
+                continue;
+            }
+
+            if (eviction == Eviction.LRU && oldest.referenced && oldest.key.get() != null) {
+                oldest.referenced = false;
+                evictionQueue.add(oldest);
+            } else {
+                remove(oldest);
+            }
+        }
+    }
+
+    /**
+     * Entries of collected widgets stay queued, without their JSON, until eviction reaches them.
+     */
+    private void remove(Entry entry) {
+        if (entries.remove(entry.key, entry)) {
+            size -= entry.size;
+            entry.json = null;
+        }
+    }
+
+    private byte[] serialize(Widget widget) {
+        try {
+            return widgetWriter.writeValueAsBytes(widget);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static final class Entry {
+        final Key key;
+        final int size;
+        byte[] json;
+        volatile boolean referenced;
+
+        Entry(Key key, byte[] json) {
+            this.key = key;
+            this.json = json;
+            this.size = json.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    /**
+     * Weak reference to a widget, equal to any key or lookup for the same instance.
+     */
+    private static final class Key extends WeakReference<Widget> {
+        final int hash;
+        Entry entry;
+
+        Key(Widget widget, ReferenceQueue<Widget> queue) {
+            super(widget, queue);
+            this.hash = System.identityHashCode(widget);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            Widget widget = get();
+
+            if (other instanceof Lookup) {
+                return widget != null && widget == ((Lookup) other).widget;
+            }
+
+            return other instanceof Key && widget != null && widget == ((Key) other).get();
+        }
+    }
+
+    private static final class Lookup {
+        final Widget widget;
+
+        Lookup(Widget widget) {
+            this.widget = widget;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(widget);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).get() == widget;
+        }
+    }
+}
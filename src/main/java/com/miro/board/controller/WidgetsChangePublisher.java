@@ -0,0 +1,337 @@
+package com.miro.board.controller;
+
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.service.WidgetsService;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * Pushes the changes of boards to subscribers as server-sent events. A board with subscribers is
+ * asked for its changes every {@code intervalMillis}, so writers never wait for subscribers and a
+ * burst of writes goes out as one event. Events are sent on a bounded pool of sender threads;
+ * while a subscriber is still sending or not ready for more, new changes are merged into its next
+ * event, so a slow client holds at most one pending event, never a queue.
+ *
+ * <p>Each subscriber starts with the changes since the version it resumes from, or with a resync
+ * holding the whole board. The changes of the next event may overlap them, so clients apply
+ * widgets as upserts and ignore deletes of unknown widgets.
+ */
+public class WidgetsChangePublisher implements AutoCloseable {
+    /**
+     * Connection to one subscriber.
+     */
+    public interface Channel {
+        /**
+         * Sends changes to the subscriber, blocking while it is not ready for more.
+         */
+        void send(WidgetsChanges changes) throws IOException;
+
+        /**
+         * Whether the subscriber takes an event now. Until it does, changes are merged into its
+         * pending event, and {@link Subscription#resume} sends that event once it is ready.
+         */
+        default boolean isReady() {
+            return true;
+        }
+    }
+
+    /**
+     * Subscription of one channel to a board.
+     */
+    public interface Subscription {
+        /**
+         * Sends the pending event, if any, now that the channel may be ready for it.
+         */
+        void resume();
+
+        void cancel();
+    }
+
+    private static final int DEFAULT_SENDER_THREADS = 16;
+
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private final ScheduledExecutorService poller;
+    private final ExecutorService senders;
+    private final Map<WidgetsService, Feed> feeds = new ConcurrentHashMap<>();
+
+    public WidgetsChangePublisher(long intervalMillis, long timeoutMillis) {
+        this(intervalMillis, timeoutMillis, DEFAULT_SENDER_THREADS, false);
+    }
+
+    /**
+     * Events are sent on at most {@code senderThreads} platform threads, as a send blocks while
+     * the connection is slow. With {@code virtualSenders} every event gets a virtual thread instead,
+     * so subscribers stuck on slow connections cost no platform thread each, and the bound does
+     * not apply.
+     */
+    public WidgetsChangePublisher(long intervalMillis, long timeoutMillis, int senderThreads, boolean virtualSenders) {
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "widgets-changes"));
+        this.senders = virtualSenders
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("widgets-changes-sender-", 0).factory())
+                : boundedSenders(senderThreads);
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Streams the changes of {@code board} since version {@code since} (-1 for none), naming each
+     * event after the version it brings the client to, or leaving it unnamed when that is {@code null}.
+     */
+    public SseEmitter subscribeEmitter(WidgetsService board, long since, LongFunction<String> eventIds) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscription subscription = subscribe(board, since, changes -> {
+            SseEmitter.SseEventBuilder event = SseEmitter.event();
+            String id = eventIds.apply(changes.getVersion());
+
+            if (id != null) {
+                event.id(id);
+            }
+
+            emitter.send(event.name(changes.isResync() ? "resync" : "changes")
+                    .data(changes, MediaType.APPLICATION_JSON));
+        });
+
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(ex -> subscription.cancel());
+
+        return emitter;
+    }
+
+    /**
+     * Sends the changes of {@code board} since version {@code since} (-1 for none) to {@code channel}
+     * until the subscription is cancelled. A channel that fails to send is unsubscribed.
+     */
+    public Subscription subscribe(WidgetsService board, long since, Channel channel) {
+        while (true) {
+            Feed feed = feeds.computeIfAbsent(board, Feed::new);
+            Subscriber subscriber = new Subscriber(feed, channel);
+
+            // A feed whose last subscriber just left is gone from the map, so retry on a new one
+            if (feed.subscribe(subscriber, since)) {
+                return subscriber;
+            }
+        }
+    }
+
+    /**
+     * Whether {@code board} has subscribers, which keep it from being closed while idle.
+     */
+    public boolean hasSubscribers(WidgetsService board) {
+        Feed feed = feeds.get(board);
+
+        return feed != null && !feed.subscribers.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * A subscriber has at most one send queued or running, so the queue is bounded by the
+     * subscribers; idle threads time out.
+     */
+    private static ExecutorService boundedSenders(int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> daemon(runnable, "widgets-changes-sender"));
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    /**
+     * Subscribers of one board and the version they were last sent. Polls and subscriptions are
+     * serialized, so every subscriber gets every change after its first event. They read the
+     * board while serialized, so they hold a lock rather than a monitor, which would pin a
+     * virtual thread to its carrier while the board waits on a database. A feed is dropped with
+     * its last subscriber, so closed boards are not kept reachable from here.
+     */
+    private final class Feed {
+        private final WidgetsService board;
+        private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        private final Lock lock = new ReentrantLock();
+        private long version;
+        private ScheduledFuture<?> poll;
+        private boolean removed;
+
+        Feed(WidgetsService board) {
+            this.board = board;
+        }
+
+        /**
+         * Adds a subscriber, unless the feed was removed with its last one.
+         */
+        boolean subscribe(Subscriber subscriber, long since) {
+            lock.lock();
+
+            try {
+                if (removed) {
+                    return false;
+                }
+
+                WidgetsChanges changes = board.getChanges(since);
+
+                if (subscribers.isEmpty()) {
+                    version = changes.getVersion();
+                    poll = poller.scheduleWithFixedDelay(this::poll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+                }
+
+                subscribers.add(subscriber);
+
+                if (!changes.isEmpty()) {
+                    subscriber.offer(changes);
+                }
+
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void unsubscribe(Subscriber subscriber) {
+            lock.lock();
+
+            try {
+                if (subscribers.remove(subscriber) && subscribers.isEmpty()) {
+                    poll.cancel(false);
+                    removed = true;
+                    feeds.remove(board, this);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Asks for changes only once the version moved. Boards without a version never report a
+         * change here, so they are not read at all; their subscribers only get the resync.
+         */
+        private void poll() {
+            lock.lock();
+
+            try {
+                long current = board.getVersion();
+
+                if (current < 0 || current == version) {
+                    return;
+                }
+
+                WidgetsChanges changes = board.getChanges(version);
+
+                if (changes.getVersion() == version) {
+                    return;
+                }
+
+                version = changes.getVersion();
+
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.offer(changes);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private final class Subscriber implements Subscription {
+        private final Feed feed;
+        private final Channel channel;
+        private WidgetsChanges pending;
+        private boolean sending;
+
+        Subscriber(Feed feed, Channel channel) {
+            this.feed = feed;
+            this.channel = channel;
+        }
+
+        void offer(WidgetsChanges changes) {
+            synchronized (this) {
+                pending = (pending == null) ? changes : pending.followedBy(changes);
+
+                if (sending || !channel.isReady()) {
+                    return;
+                }
+
+                sending = true;
+            }
+
+            senders.execute(this::send);
+        }
+
+        @Override
+        public void resume() {
+            synchronized (this) {
+                if (sending || pending == null || !channel.isReady()) {
+                    return;
+                }
+
+                sending = true;
+            }
+
+            senders.execute(this::send);
+        }
+
+        @Override
+        public void cancel() {
+            feed.unsubscribe(this);
+        }
+
+        /**
+         * Sends pending events until there are none or the channel is not ready; the check and
+         * {@link #resume} share the monitor, so demand added meanwhile is never missed.
+         */
+        private void send() {
+            while (true) {
+                WidgetsChanges changes;
+
+                synchronized (this) {
+                    changes = pending;
+
+                    if (changes == null || !channel.isReady()) {
+                        sending = false;
+                        return;
+                    }
+
+                    pending = null;
+                }
+
+                try {
+                    channel.send(changes);
+                } catch (IOException | IllegalStateException ex) {
+                    feed.unsubscribe(this);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,52 +1,285 @@
 package com.miro.board.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miro.board.model.Area;
+import com.miro.board.model.WidgetsBatch;
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
+import com.miro.board.model.exception.InvalidAreaException;
+import com.miro.board.model.exception.InvalidPageRequestException;
+import com.miro.board.service.BoardsService;
 import com.miro.board.service.WidgetsService;
 import com.miro.board.model.Widget;
 import com.miro.board.model.WidgetDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import javax.validation.Valid;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
-@RequestMapping("/widgets")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping({"/widgets", "/boards/{boardId}/widgets"})
 public class WidgetsController {
+    static final int MAX_PAGE_SIZE = 1000;
+
     private final WidgetsService widgetsService;
+    private final BoardsService boardsService;
+    private final WidgetJsonCache widgetJsonCache;
+    private final WidgetsJsonWriter widgetsJsonWriter;
+    private final WidgetsChangePublisher changePublisher;
+    private final ObjectMapper objectMapper;
+    private final BoardTags boardTags = new BoardTags();
+    private final ResyncLimiter resyncLimiter;
 
     @Autowired
-    public WidgetsController(WidgetsService widgetsService) {
+    public WidgetsController(WidgetsService widgetsService, BoardsService boardsService,
+                             WidgetJsonCache widgetJsonCache, WidgetsChangePublisher changePublisher,
+                             ObjectMapper objectMapper, @Value("${widgets.changes.max-resyncs}") int maxResyncs) {
         this.widgetsService = widgetsService;
+        this.boardsService = boardsService;
+        this.widgetJsonCache = widgetJsonCache;
+        this.widgetsJsonWriter = new WidgetsJsonWriter(widgetJsonCache);
+        this.changePublisher = changePublisher;
+        this.objectMapper = objectMapper;
+        this.resyncLimiter = new ResyncLimiter(maxResyncs);
     }
 
+    /**
+     * Widgets as a JSON array, spliced from the cached JSON of each widget as they are read
+     * from the board. Tagged with the board version, so an unchanged board is answered with
+     * 304 before any widget is read.
+     */
     @GetMapping
+    public void getAll(@PathVariable(value = "boardId", required = false) String boardId,
+                       @RequestParam(value = "x1", required = false) Integer x1,
+                       @RequestParam(value = "y1", required = false) Integer y1,
+                       @RequestParam(value = "x2", required = false) Integer x2,
+                       @RequestParam(value = "y2", required = false) Integer y2,
+                       WebRequest webRequest, HttpServletResponse response) throws IOException {
+        Area area = area(x1, y1, x2, y2);
+        WidgetsService board = board(boardId);
+
+        if (webRequest.checkNotModified(boardETag(board, "json"))) {
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        widgetsJsonWriter.writeArray(getWidgets(board, area), board.keepsWidgets(), response.getOutputStream());
+    }
+
+    /**
+     * Same widgets as {@link #getAll}, serialized by the CBOR message converter.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_CBOR_VALUE)
+    public Collection<Widget> getAllCbor(@PathVariable(value = "boardId", required = false) String boardId,
+                                         @RequestParam(value = "x1", required = false) Integer x1,
+                                         @RequestParam(value = "y1", required = false) Integer y1,
+                                         @RequestParam(value = "x2", required = false) Integer x2,
+                                         @RequestParam(value = "y2", required = false) Integer y2,
+                                         WebRequest webRequest) {
+        Area area = area(x1, y1, x2, y2);
+        WidgetsService board = board(boardId);
+
+        if (webRequest.checkNotModified(boardETag(board, "cbor"))) {
+            return null;
+        }
+
+        return getWidgets(board, area);
+    }
+
+    /**
+     * Same widgets as {@link #getAll}, one JSON object per line.
+     */
+    @GetMapping(produces = WidgetsJsonWriter.APPLICATION_NDJSON_VALUE)
+    public void streamAll(@PathVariable(value = "boardId", required = false) String boardId,
+                          @RequestParam(value = "x1", required = false) Integer x1,
+                          @RequestParam(value = "y1", required = false) Integer y1,
+                          @RequestParam(value = "x2", required = false) Integer x2,
+                          @RequestParam(value = "y2", required = false) Integer y2,
+                          WebRequest webRequest, HttpServletResponse response) throws IOException {
+        Area area = area(x1, y1, x2, y2);
+        WidgetsService board = board(boardId);
+
+        if (webRequest.checkNotModified(boardETag(board, "ndjson"))) {
+            return;
+        }
+
+        response.setContentType(WidgetsJsonWriter.APPLICATION_NDJSON_VALUE);
+        widgetsJsonWriter.writeLines(getWidgets(board, area), board.keepsWidgets(), response.getOutputStream());
+    }
+
+    /**
+     * Changes of the board since the board tag {@code since}, tagged with the board version they
+     * bring the client to. An unknown tag, a tag from before a restart or a tag older than the
+     * change log answers with a resync holding the whole board. At most {@code widgets.changes.max-resyncs}
+     * requests without a tag of this instance resync at once, the others are answered with 429.
+     */
+    @GetMapping(value = "/changes", params = "since", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void getChanges(@PathVariable(value = "boardId", required = false) String boardId,
+                           @RequestParam("since") String since,
+                           HttpServletResponse response) throws IOException {
+        long version = boardTags.taggedVersion(since);
+        WidgetsService board = board(boardId);
+        Runnable permit = (version < 0) ? resyncLimiter.acquire() : ResyncLimiter.NO_PERMIT;
+
+        // Written here rather than returned, so a resync holds its permit until the board is sent
+        try {
+            WidgetsChanges changes = board.getChanges(version);
+            String eTag = boardTags.boardTag(changes.getVersion(), "json");
+
+            if (eTag != null) {
+                response.setHeader(HttpHeaders.ETAG, eTag);
+            }
+
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), changes);
+        } finally {
+            permit.run();
+        }
+    }
+
+    /**
+     * Changes of the board as server-sent events, each with the board tag it brings the client to
+     * as its id. Starts with a {@code resync} event with the whole board, unless the client resumes
+     * from a tag given as {@code since} or, on reconnection, as {@code Last-Event-ID}.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@PathVariable(value = "boardId", required = false) String boardId,
+                                    @RequestParam(value = "since", required = false) String since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        long version = boardTags.taggedVersion((lastEventId == null) ? since : lastEventId);
+
+        return changePublisher.subscribeEmitter(board(boardId), version, changed -> boardTags.boardTag(changed, "json"));
+    }
+
+    @GetMapping(params = "limit")
     @ResponseStatus(HttpStatus.OK)
-    public Collection<Widget> getAll() {
-        return widgetsService.getWidgets();
+    public WidgetsPage getPage(@PathVariable(value = "boardId", required = false) String boardId,
+                               @RequestParam("limit") int limit,
+                               @RequestParam(value = "after", required = false) String after,
+                               @RequestParam(value = "x1", required = false) Integer x1,
+                               @RequestParam(value = "y1", required = false) Integer y1,
+                               @RequestParam(value = "x2", required = false) Integer x2,
+                               @RequestParam(value = "y2", required = false) Integer y2) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidPageRequestException("Limit should be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        if (area(x1, y1, x2, y2) != null) {
+            throw new InvalidAreaException("Area filter cannot be combined with limit");
+        }
+
+        return board(boardId).getWidgets((after == null) ? null : WidgetsCursor.decode(after), limit);
     }
 
+    /**
+     * A widget, tagged with a hash of its fields, so an unchanged widget is answered with 304
+     * without being serialized.
+     */
     @GetMapping(value = "/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public Widget get(@PathVariable("id") String id) {
-        return widgetsService.getWidget(id);
+    public ResponseEntity<byte[]> get(@PathVariable(value = "boardId", required = false) String boardId,
+                                      @PathVariable("id") String id, WebRequest webRequest) {
+        WidgetsService board = board(boardId);
+        Widget widget = board.getWidget(id);
+
+        if (webRequest.checkNotModified(BoardTags.widgetTag(widget, "json"))) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(widgetJsonCache.getJson(widget, board.keepsWidgets()));
+    }
+
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_CBOR_VALUE)
+    public Widget getCbor(@PathVariable(value = "boardId", required = false) String boardId,
+                          @PathVariable("id") String id, WebRequest webRequest) {
+        Widget widget = board(boardId).getWidget(id);
+
+        return webRequest.checkNotModified(BoardTags.widgetTag(widget, "cbor")) ? null : widget;
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public Widget create(@Valid @RequestBody WidgetDTO widgetDTO) {
-        return widgetsService.createWidget(widgetDTO);
+    public Widget create(@PathVariable(value = "boardId", required = false) String boardId,
+                         @Valid @RequestBody WidgetDTO widgetDTO) {
+        return boardToCreateOn(boardId, true).createWidget(widgetDTO);
+    }
+
+    @PostMapping(value = "/batch")
+    @ResponseStatus(HttpStatus.OK)
+    public List<Widget> applyBatch(@PathVariable(value = "boardId", required = false) String boardId,
+                                   @Valid @RequestBody WidgetsBatch widgetsBatch) {
+        return boardToCreateOn(boardId, widgetsBatch.createsWidgets()).applyBatch(widgetsBatch.getOperations());
     }
 
     @PutMapping(value = "/{id}")
     @ResponseStatus(HttpStatus.OK)
-    public Widget update(@PathVariable("id") String id, @Valid @RequestBody WidgetDTO widgetDTO) {
-        return widgetsService.updateWidget(id, widgetDTO);
+    public Widget update(@PathVariable(value = "boardId", required = false) String boardId,
+                         @PathVariable("id") String id, @Valid @RequestBody WidgetDTO widgetDTO) {
+        return board(boardId).updateWidget(id, widgetDTO);
     }
 
     @DeleteMapping(value = "/{id}")
     @ResponseStatus(HttpStatus.OK)
-    public boolean delete(@Valid @PathVariable("id") String id) {
-        return widgetsService.deleteWidget(id);
+    public boolean delete(@PathVariable(value = "boardId", required = false) String boardId,
+                          @Valid @PathVariable("id") String id) {
+        return board(boardId).deleteWidget(id);
+    }
+
+    /**
+     * Tag of the board's widgets in one format. The version is read before the widgets,
+     * so a response is never tagged newer than its content.
+     */
+    private String boardETag(WidgetsService board, String format) {
+        return boardTags.boardTag(board.getVersion(), format);
+    }
+
+    static Collection<Widget> getWidgets(WidgetsService board, Area area) {
+        return (area == null) ? board.getWidgets() : board.getWidgets(area);
+    }
+
+    static Area area(Integer x1, Integer y1, Integer x2, Integer y2) {
+        if (x1 == null && y1 == null && x2 == null && y2 == null) {
+            return null;
+        }
+
+        if (x1 == null || y1 == null || x2 == null || y2 == null) {
+            throw new InvalidAreaException("Area filter requires all of x1, y1, x2 and y2");
+        }
+
+        if (x1 > x2 || y1 > y2) {
+            throw new InvalidAreaException("Area filter requires x1 <= x2 and y1 <= y2");
+        }
+
+        return new Area(x1, y1, x2, y2);
+    }
+
+    private WidgetsService board(String boardId) {
+        return (boardId == null) ? widgetsService : boardsService.getBoard(boardId);
+    }
+
+    /**
+     * The board of a write; only a write creating widgets creates a board that does not exist yet.
+     */
+    private WidgetsService boardToCreateOn(String boardId, boolean createsWidgets) {
+        if (boardId == null) {
+            return widgetsService;
+        }
+
+        return createsWidgets ? boardsService.getOrCreateBoard(boardId) : boardsService.getBoard(boardId);
     }
 }
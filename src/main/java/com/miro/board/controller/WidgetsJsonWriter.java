@@ -0,0 +1,129 @@
+package com.miro.board.controller;
+
+import com.miro.board.model.Widget;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Writes widgets straight to a stream, as a JSON array or as newline-delimited JSON. The JSON of
+ * each widget comes from {@link WidgetJsonCache}, unless the widgets are not {@code cached}, so on
+ * a warm cache a response is mostly copied bytes. Only one buffer is held, so memory stays the
+ * same whatever the board size. On the reactive stack the same bytes go out as a stream of
+ * buffers, each filled only when requested.
+ */
+public class WidgetsJsonWriter {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final WidgetJsonCache widgetJsonCache;
+
+    public WidgetsJsonWriter(WidgetJsonCache widgetJsonCache) {
+        this.widgetJsonCache = widgetJsonCache;
+    }
+
+    public void writeArray(Iterable<Widget> widgets, OutputStream output) throws IOException {
+        writeArray(widgets, true, output);
+    }
+
+    public void writeArray(Iterable<Widget> widgets, boolean cached, OutputStream output) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(output, BUFFER_SIZE);
+        char separator = '[';
+
+        for (Widget widget : widgets) {
+            buffered.write(separator);
+            buffered.write(widgetJsonCache.getJson(widget, cached));
+            separator = ',';
+        }
+
+        if (separator == '[') {
+            buffered.write('[');
+        }
+
+        buffered.write(']');
+        buffered.flush();
+    }
+
+    public void writeLines(Iterable<Widget> widgets, OutputStream output) throws IOException {
+        writeLines(widgets, true, output);
+    }
+
+    public void writeLines(Iterable<Widget> widgets, boolean cached, OutputStream output) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(output, BUFFER_SIZE);
+
+        for (Widget widget : widgets) {
+            buffered.write(widgetJsonCache.getJson(widget, cached));
+            buffered.write('\n');
+        }
+
+        buffered.flush();
+    }
+
+    public Flux<DataBuffer> arrayBuffers(Iterable<Widget> widgets, boolean cached, DataBufferFactory bufferFactory) {
+        return Flux.generate(() -> new Buffers(widgets.iterator(), cached, bufferFactory, true), Buffers::next);
+    }
+
+    public Flux<DataBuffer> lineBuffers(Iterable<Widget> widgets, boolean cached, DataBufferFactory bufferFactory) {
+        return Flux.generate(() -> new Buffers(widgets.iterator(), cached, bufferFactory, false), Buffers::next);
+    }
+
+    /**
+     * Widgets cut into buffers of about {@code BUFFER_SIZE} bytes, as an array or as lines.
+     */
+    private final class Buffers {
+        private final Iterator<Widget> widgets;
+        private final boolean cached;
+        private final DataBufferFactory bufferFactory;
+        private final boolean array;
+        private boolean started;
+        private boolean finished;
+
+        Buffers(Iterator<Widget> widgets, boolean cached, DataBufferFactory bufferFactory, boolean array) {
+            this.widgets = widgets;
+            this.cached = cached;
+            this.bufferFactory = bufferFactory;
+            this.array = array;
+        }
+
+        Buffers next(SynchronousSink<DataBuffer> sink) {
+            if (finished) {
+                sink.complete();
+                return this;
+            }
+
+            DataBuffer buffer = bufferFactory.allocateBuffer(BUFFER_SIZE);
+
+            while (buffer.readableByteCount() < BUFFER_SIZE && widgets.hasNext()) {
+                if (array) {
+                    buffer.write(started ? (byte) ',' : (byte) '[');
+                }
+
+                buffer.write(widgetJsonCache.getJson(widgets.next(), cached));
+                started = true;
+
+                if (!array) {
+                    buffer.write((byte) '\n');
+                }
+            }
+
+            if (!widgets.hasNext()) {
+                finished = true;
+
+                if (array) {
+                    buffer.write(started ? new byte[]{']'} : new byte[]{'[', ']'});
+                }
+            }
+
+            sink.next(buffer);
+
+            return this;
+        }
+    }
+}
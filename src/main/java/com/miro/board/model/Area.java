@@ -0,0 +1,25 @@
+package com.miro.board.model;
+
+import lombok.Getter;
+
+@Getter
+public class Area {
+    private final int x1;
+    private final int y1;
+    private final int x2;
+    private final int y2;
+
+    public Area(int x1, int y1, int x2, int y2) {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+    }
+
+    public boolean contains(Widget widget) {
+        return widget.getX() >= x1
+                && widget.getY() >= y1
+                && (long) widget.getX() + widget.getWidth() <= x2
+                && (long) widget.getY() + widget.getHeight() <= y2;
+    }
+}
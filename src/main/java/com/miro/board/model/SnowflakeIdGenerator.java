@@ -0,0 +1,54 @@
+package com.miro.board.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 64-bit ids: 41 bits of milliseconds since 2020-01-01 UTC, a 10-bit node and
+ * a 12-bit sequence. Ids from one node only ever increase: when the clock goes back or more than
+ * 4096 ids are taken in a millisecond, the generator keeps counting from its last id instead of
+ * waiting. Ids are 16 lowercase hex digits, so their string order is their numeric order.
+ */
+public class SnowflakeIdGenerator implements WidgetIdGenerator {
+    public static final int MAX_NODE = (1 << 10) - 1;
+
+    static final long EPOCH_MILLIS = 1_577_836_800_000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long node;
+
+    /**
+     * The last id without its node bits, so incrementing it moves the sequence
+     * and rolls over into the timestamp.
+     */
+    private final AtomicLong lastTick = new AtomicLong();
+
+    public SnowflakeIdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE + ": " + node);
+        }
+
+        this.node = node;
+    }
+
+    @Override
+    public String nextId() {
+        return WidgetIds.format(nextLong());
+    }
+
+    long nextLong() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long last, tick;
+
+        do {
+            last = lastTick.get();
+            tick = Math.max(now, last + 1);
+        } while (!lastTick.compareAndSet(last, tick));
+
+        return (tick >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)
+                | node << SEQUENCE_BITS
+                | (tick & SEQUENCE_MASK);
+    }
+}
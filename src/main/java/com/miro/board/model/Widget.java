@@ -4,7 +4,6 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Getter;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Getter
 public class Widget {
@@ -18,8 +17,13 @@ public class Widget {
     private final LocalDateTime lastModified;
 
     public Widget(String id, Integer x, Integer y, Integer z, Integer width, Integer height) {
-        this.id = (id == null) ? UUID.randomUUID().toString() : id;
-        this.lastModified = LocalDateTime.now();
+        this(id, x, y, z, width, height, LocalDateTime.now());
+    }
+
+    public Widget(String id, Integer x, Integer y, Integer z, Integer width, Integer height,
+                  LocalDateTime lastModified) {
+        this.id = id;
+        this.lastModified = lastModified;
         this.x = x;
         this.y = y;
         this.z = z;
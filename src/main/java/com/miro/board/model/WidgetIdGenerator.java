@@ -0,0 +1,15 @@
+package com.miro.board.model;
+
+import java.util.UUID;
+
+/**
+ * Source of ids for new widgets.
+ */
+public interface WidgetIdGenerator {
+    /**
+     * Random UUIDs, the ids widgets always had.
+     */
+    WidgetIdGenerator UUIDS = () -> UUID.randomUUID().toString();
+
+    String nextId();
+}
@@ -0,0 +1,6 @@
+package com.miro.board.model;
+
+public enum WidgetIdStrategy {
+    UUID,
+    SNOWFLAKE
+}
@@ -0,0 +1,52 @@
+package com.miro.board.model;
+
+import java.util.UUID;
+
+/**
+ * Numeric form of widget ids. Widgets keep whatever id they were created with, so UUID and
+ * snowflake ids can live on the same board.
+ *
+ * <p>Storage that keys widgets by numbers packs an id into two longs: a UUID as its two halves,
+ * a snowflake id as zero and the id. Random UUIDs never have a zero high half, since it holds
+ * the version bits.
+ */
+public final class WidgetIds {
+    private static final int SNOWFLAKE_LENGTH = 16;
+    private static final int UUID_LENGTH = 36;
+
+    private WidgetIds() {
+    }
+
+    /**
+     * The id as two longs, or {@code null} if it is neither a snowflake id nor a UUID, or is not
+     * spelled the way {@link #fromKey} gives it back, such as an uppercase UUID.
+     */
+    public static UUID toKey(String id) {
+        try {
+            if (id.length() == SNOWFLAKE_LENGTH) {
+                long value = Long.parseUnsignedLong(id, 16);
+                return (format(value).equals(id)) ? new UUID(0, value) : null;
+            }
+
+            if (id.length() != UUID_LENGTH) {
+                return null;
+            }
+
+            UUID uuid = UUID.fromString(id);
+
+            return fromKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()).equals(id) ? uuid : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    public static String fromKey(long high, long low) {
+        return (high == 0) ? format(low) : new UUID(high, low).toString();
+    }
+
+    static String format(long id) {
+        String hex = Long.toHexString(id);
+
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+}
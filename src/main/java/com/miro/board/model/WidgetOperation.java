@@ -0,0 +1,33 @@
+package com.miro.board.model;
+
+import lombok.Getter;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+@Getter
+public class WidgetOperation {
+    public enum Type {
+        CREATE, UPDATE, DELETE
+    }
+
+    @NotNull(message = "Type is a mandatory param")
+    private final Type type;
+
+    /**
+     * Widget to update or delete; widgets to create get a generated id. No generated id is longer
+     * than a UUID.
+     */
+    @Size(max = 36, message = "Id should be at most 36 characters")
+    private final String id;
+
+    @Valid
+    private final WidgetDTO widget;
+
+    public WidgetOperation(Type type, String id, WidgetDTO widget) {
+        this.type = type;
+        this.id = id;
+        this.widget = widget;
+    }
+}
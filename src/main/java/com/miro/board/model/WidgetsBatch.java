@@ -0,0 +1,31 @@
+package com.miro.board.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+@Getter
+public class WidgetsBatch {
+    public static final int MAX_SIZE = 1000;
+
+    @NotEmpty(message = "Operations are mandatory")
+    @Size(max = MAX_SIZE, message = "Batch should contain at most " + MAX_SIZE + " operations")
+    private final List<@Valid WidgetOperation> operations;
+
+    @JsonCreator
+    public WidgetsBatch(@JsonProperty("operations") List<WidgetOperation> operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * Whether the batch creates widgets, and so may create its board too.
+     */
+    public boolean createsWidgets() {
+        return operations.stream().anyMatch(operation -> operation.getType() == WidgetOperation.Type.CREATE);
+    }
+}
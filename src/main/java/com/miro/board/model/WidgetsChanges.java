@@ -0,0 +1,127 @@
+package com.miro.board.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes of a board up to {@code version}, with every widget in its latest state. Widgets pushed
+ * up by another widget are {@code shifted}; widgets created and deleted within the same changes
+ * are left out. With {@code resync} set the changes could not be worked out, and {@code created}
+ * holds the whole board instead, replacing whatever the client has.
+ */
+@Getter
+public class WidgetsChanges {
+    private final long version;
+    private final boolean resync;
+    private final List<Widget> created;
+    private final List<Widget> updated;
+    private final List<Widget> shifted;
+    private final List<String> deleted;
+
+    public WidgetsChanges(long version, boolean resync, List<Widget> created, List<Widget> updated,
+                          List<Widget> shifted, List<String> deleted) {
+        this.version = version;
+        this.resync = resync;
+        this.created = created;
+        this.updated = updated;
+        this.shifted = shifted;
+        this.deleted = deleted;
+    }
+
+    public static WidgetsChanges none(long version) {
+        return new WidgetsChanges(version, false, Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList());
+    }
+
+    public static WidgetsChanges resync(long version, Collection<Widget> widgets) {
+        return new WidgetsChanges(version, true, new ArrayList<>(widgets), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList());
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return !resync && created.isEmpty() && updated.isEmpty() && shifted.isEmpty() && deleted.isEmpty();
+    }
+
+    /**
+     * These changes followed by {@code next}, as if both had been worked out at once.
+     */
+    public WidgetsChanges followedBy(WidgetsChanges next) {
+        if (next.resync) {
+            return next;
+        }
+
+        Map<String, Widget> created = byId(this.created);
+        Map<String, Widget> updated = byId(this.updated);
+        Map<String, Widget> shifted = byId(this.shifted);
+        Set<String> deleted = new LinkedHashSet<>(this.deleted);
+
+        created.putAll(byId(next.created));
+
+        for (Widget widget : next.updated) {
+            if (created.containsKey(widget.getId())) {
+                created.put(widget.getId(), widget);
+            } else {
+                shifted.remove(widget.getId());
+                updated.put(widget.getId(), widget);
+            }
+        }
+
+        for (Widget widget : next.shifted) {
+            if (created.containsKey(widget.getId())) {
+                created.put(widget.getId(), widget);
+            } else if (updated.containsKey(widget.getId())) {
+                updated.put(widget.getId(), widget);
+            } else {
+                shifted.put(widget.getId(), widget);
+            }
+        }
+
+        for (String id : next.deleted) {
+            boolean wasCreated = (created.remove(id) != null);
+            updated.remove(id);
+            shifted.remove(id);
+
+            if (!wasCreated && !resync) {
+                deleted.add(id);
+            }
+        }
+
+        if (resync) {
+            created.putAll(updated);
+            created.putAll(shifted);
+
+            return resync(next.version, byZ(created.values()));
+        }
+
+        return new WidgetsChanges(next.version, false, byZ(created.values()), byZ(updated.values()),
+                byZ(shifted.values()), new ArrayList<>(deleted));
+    }
+
+    private static Map<String, Widget> byId(List<Widget> widgets) {
+        Map<String, Widget> widgetsById = new LinkedHashMap<>();
+
+        for (Widget widget : widgets) {
+            widgetsById.put(widget.getId(), widget);
+        }
+
+        return widgetsById;
+    }
+
+    private static List<Widget> byZ(Collection<Widget> widgets) {
+        List<Widget> sorted = new ArrayList<>(widgets);
+        sorted.sort(Comparator.comparing(Widget::getZ));
+
+        return sorted;
+    }
+}
@@ -0,0 +1,55 @@
+package com.miro.board.model;
+
+import com.miro.board.model.exception.InvalidPageRequestException;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+
+@Getter
+public class WidgetsCursor {
+    private final int z;
+    private final String id;
+
+    public WidgetsCursor(int z, String id) {
+        this.z = z;
+        this.id = id;
+    }
+
+    public static WidgetsCursor after(Widget widget) {
+        return new WidgetsCursor(widget.getZ(), widget.getId());
+    }
+
+    /**
+     * The z a page resumes after: the current z of the cursor's widget, so widgets shifted up
+     * together with it are neither skipped nor repeated, or the z it had once it was deleted.
+     * A widget moved by an update still makes the next page skip or repeat the widgets in between.
+     */
+    public static int afterZ(WidgetsCursor after, Function<String, Widget> widgets) {
+        if (after == null) {
+            return Integer.MIN_VALUE;
+        }
+
+        Widget widget = widgets.apply(after.getId());
+
+        return (widget == null) ? after.getZ() : widget.getZ();
+    }
+
+    public static WidgetsCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(':');
+
+            return new WidgetsCursor(Integer.parseInt(decoded.substring(0, separator)),
+                    decoded.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new InvalidPageRequestException("Invalid cursor: " + cursor);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((z + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,30 @@
+package com.miro.board.model;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class WidgetsPage {
+    private final List<Widget> widgets;
+    private final String next;
+
+    public WidgetsPage(List<Widget> widgets, String next) {
+        this.widgets = widgets;
+        this.next = next;
+    }
+
+    /**
+     * Page of up to {@code limit} widgets out of {@code widgets}, which holds up to {@code limit + 1}
+     * widgets in z order; the extra widget only signals that there is a next page.
+     */
+    public static WidgetsPage of(List<Widget> widgets, int limit) {
+        if (widgets.size() <= limit) {
+            return new WidgetsPage(widgets, null);
+        }
+
+        List<Widget> page = widgets.subList(0, limit);
+
+        return new WidgetsPage(page, WidgetsCursor.after(page.get(limit - 1)).encode());
+    }
+}
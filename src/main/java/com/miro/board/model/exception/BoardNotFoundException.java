@@ -0,0 +1,7 @@
+package com.miro.board.model.exception;
+
+public class BoardNotFoundException extends RuntimeException {
+    public BoardNotFoundException(String boardId) {
+        super("Board not found for id: " + boardId);
+    }
+}
@@ -0,0 +1,7 @@
+package com.miro.board.model.exception;
+
+public class InvalidAreaException extends RuntimeException {
+    public InvalidAreaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.miro.board.model.exception;
+
+public class InvalidTagException extends RuntimeException {
+    public InvalidTagException(String tag) {
+        super("Not a board tag: " + tag);
+    }
+}
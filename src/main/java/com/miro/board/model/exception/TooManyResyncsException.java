@@ -0,0 +1,7 @@
+package com.miro.board.model.exception;
+
+public class TooManyResyncsException extends RuntimeException {
+    public TooManyResyncsException(int maxResyncs) {
+        super("More than " + maxResyncs + " resyncs in progress, retry later");
+    }
+}
@@ -0,0 +1,26 @@
+package com.miro.board.repository;
+
+import lombok.Getter;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Row of the {@code board} table. It carries no data; writers lock it to serialize
+ * the writes of one board across services and application instances.
+ */
+@Getter
+@Entity
+@Table(name = "board")
+public class BoardEntity {
+    @Id
+    private String id;
+
+    protected BoardEntity() {
+    }
+
+    public BoardEntity(String id) {
+        this.id = id;
+    }
+}
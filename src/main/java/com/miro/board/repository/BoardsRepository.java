@@ -0,0 +1,19 @@
+package com.miro.board.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import jakarta.persistence.LockModeType;
+import java.util.Optional;
+
+public interface BoardsRepository extends JpaRepository<BoardEntity, String> {
+    /**
+     * Reads the board row with {@code SELECT ... FOR UPDATE}; the lock is held until
+     * the surrounding transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from BoardEntity b where b.id = :id")
+    Optional<BoardEntity> lockById(@Param("id") String id);
+}
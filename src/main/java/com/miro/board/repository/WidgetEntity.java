@@ -0,0 +1,62 @@
+package com.miro.board.repository;
+
+import com.miro.board.model.Widget;
+import lombok.Getter;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Row of the {@code widget} table. {@code x2} and {@code y2} store the top-right corner,
+ * so area queries compare plain columns and can use the bounds index.
+ * Z is indexed but deliberately not unique: a shift moves a run of rows within one statement.
+ */
+@Getter
+@Entity
+@Table(name = "widget", indexes = {
+        @Index(name = "widget_board_z_idx", columnList = "boardId, z"),
+        @Index(name = "widget_board_bounds_idx", columnList = "boardId, x, y, x2, y2")
+})
+public class WidgetEntity {
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false)
+    private String boardId;
+
+    private int x;
+    private int y;
+    private int z;
+    private int width;
+    private int height;
+    private long x2;
+    private long y2;
+
+    @Column(nullable = false)
+    private LocalDateTime lastModified;
+
+    protected WidgetEntity() {
+    }
+
+    public WidgetEntity(String boardId, Widget widget) {
+        this.id = widget.getId();
+        this.boardId = boardId;
+        this.x = widget.getX();
+        this.y = widget.getY();
+        this.z = widget.getZ();
+        this.width = widget.getWidth();
+        this.height = widget.getHeight();
+        this.x2 = (long) widget.getX() + widget.getWidth();
+        this.y2 = (long) widget.getY() + widget.getHeight();
+        this.lastModified = widget.getLastModified();
+    }
+
+    public Widget toWidget() {
+        return new Widget(id, x, y, z, width, height, lastModified);
+    }
+}
@@ -0,0 +1,52 @@
+package com.miro.board.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface WidgetsRepository extends JpaRepository<WidgetEntity, String> {
+    Optional<WidgetEntity> findByBoardIdAndId(String boardId, String id);
+
+    List<WidgetEntity> findByBoardIdOrderByZ(String boardId);
+
+    boolean existsByBoardId(String boardId);
+
+    List<WidgetEntity> findByBoardIdAndZGreaterThanOrderByZ(String boardId, int z, Pageable pageable);
+
+    @Query("select w from WidgetEntity w where w.boardId = :boardId"
+            + " and w.x >= :x1 and w.y >= :y1 and w.x2 <= :x2 and w.y2 <= :y2 order by w.z")
+    List<WidgetEntity> findInArea(@Param("boardId") String boardId,
+                                  @Param("x1") int x1, @Param("y1") int y1,
+                                  @Param("x2") long x2, @Param("y2") long y2);
+
+    @Query("select max(w.z) from WidgetEntity w where w.boardId = :boardId and w.id <> :excludedId")
+    Integer findMaxZ(@Param("boardId") String boardId, @Param("excludedId") String excludedId);
+
+    boolean existsByBoardIdAndZAndIdNot(String boardId, int z, String excludedId);
+
+    /**
+     * Last z of the contiguous run starting at {@code z}: the lowest occupied z from {@code z}
+     * upwards whose successor is free.
+     */
+    @Query("select min(w.z) from WidgetEntity w where w.boardId = :boardId and w.z >= :z and w.id <> :excludedId"
+            + " and not exists (select n from WidgetEntity n where n.boardId = :boardId"
+            + " and n.z = w.z + 1 and n.id <> :excludedId)")
+    Integer findRunEnd(@Param("boardId") String boardId, @Param("z") int z,
+                       @Param("excludedId") String excludedId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update WidgetEntity w set w.z = w.z + 1, w.lastModified = :lastModified"
+            + " where w.boardId = :boardId and w.z between :fromZ and :toZ and w.id <> :excludedId")
+    int shiftUp(@Param("boardId") String boardId, @Param("fromZ") int fromZ, @Param("toZ") int toZ,
+                @Param("excludedId") String excludedId, @Param("lastModified") LocalDateTime lastModified);
+
+    @Modifying
+    @Query("delete from WidgetEntity w where w.boardId = :boardId and w.id = :id")
+    int deleteByBoardIdAndId(@Param("boardId") String boardId, @Param("id") String id);
+}
@@ -1,14 +1,22 @@
 package com.miro.board.service;
 
 import com.miro.board.model.ApiError;
+import com.miro.board.model.exception.BoardNotFoundException;
+import com.miro.board.model.exception.InvalidAreaException;
+import com.miro.board.model.exception.InvalidBatchException;
+import com.miro.board.model.exception.InvalidPageRequestException;
+import com.miro.board.model.exception.InvalidTagException;
+import com.miro.board.model.exception.TooManyResyncsException;
 import com.miro.board.model.exception.WidgetNotFoundException;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
 @Order(Ordered.HIGHEST_PRECEDENCE)
 @ControllerAdvice
@@ -18,11 +26,48 @@ public class AppExceptionHandler {
         return buildResponseEntity(new ApiError(HttpStatus.NOT_FOUND, ex.getMessage(), ex));
     }
 
+    @ExceptionHandler(BoardNotFoundException.class)
+    public ResponseEntity<Object> handleBoardNotFound(BoardNotFoundException ex) {
+        return buildResponseEntity(new ApiError(HttpStatus.NOT_FOUND, ex.getMessage(), ex));
+    }
+
+    @ExceptionHandler(InvalidAreaException.class)
+    public ResponseEntity<Object> handleInvalidArea(InvalidAreaException ex) {
+        return buildResponseEntity(new ApiError(HttpStatus.BAD_REQUEST, ex.getMessage(), ex));
+    }
+
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<Object> handleInvalidPageRequest(InvalidPageRequestException ex) {
+        return buildResponseEntity(new ApiError(HttpStatus.BAD_REQUEST, ex.getMessage(), ex));
+    }
+
+    @ExceptionHandler(InvalidBatchException.class)
+    public ResponseEntity<Object> handleInvalidBatch(InvalidBatchException ex) {
+        return buildResponseEntity(new ApiError(HttpStatus.BAD_REQUEST, ex.getMessage(), ex));
+    }
+
+    @ExceptionHandler(InvalidTagException.class)
+    public ResponseEntity<Object> handleInvalidTag(InvalidTagException ex) {
+        return buildResponseEntity(new ApiError(HttpStatus.BAD_REQUEST, ex.getMessage(), ex));
+    }
+
+    @ExceptionHandler(TooManyResyncsException.class)
+    public ResponseEntity<Object> handleTooManyResyncs(TooManyResyncsException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ApiError(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage(), ex));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Object> handleValidationExceptions(MethodArgumentNotValidException ex) {
         return buildResponseEntity(new ApiError(HttpStatus.BAD_REQUEST, ex.getMessage(), ex));
     }
 
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<Object> handleReactiveValidationExceptions(WebExchangeBindException ex) {
+        return buildResponseEntity(new ApiError(HttpStatus.BAD_REQUEST, ex.getMessage(), ex));
+    }
+
     private ResponseEntity<Object> buildResponseEntity(ApiError apiError) {
         return new ResponseEntity<>(apiError, apiError.getStatus());
     }
@@ -0,0 +1,320 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.model.WidgetOperation;
+import com.miro.board.model.exception.WidgetNotFoundException;
+import com.miro.board.storage.WidgetsLog;
+import com.miro.board.storage.WidgetsSnapshot;
+import com.miro.board.storage.WidgetsView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies all mutations on a single writer thread. Callers enqueue a mutation into a bounded
+ * queue and wait for its result; the writer drains whatever has accumulated, applies the whole
+ * batch to one working snapshot and publishes it once. Nothing is ever retried, so throughput
+ * does not collapse under write bursts the way competing CAS loops do.
+ *
+ * <p>With a {@link WidgetsLog} the board is recovered from it on construction, and every batch
+ * is appended to it before the new snapshot is published and the mutations are acknowledged.
+ * When the log ends with a snapshot, reads are served straight from its mapping while the writer
+ * thread rebuilds the board in the background, so a large board is readable right after start.
+ */
+public class BatchingWidgetsService extends SnapshotWidgetsService implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private volatile WidgetsSnapshot widgets;
+    private volatile WidgetsView bootWidgets;
+
+    private final BlockingQueue<Mutation<?>> mutations;
+    private final WidgetsLog log;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public BatchingWidgetsService() {
+        this(DEFAULT_QUEUE_CAPACITY, null);
+    }
+
+    public BatchingWidgetsService(int queueCapacity) {
+        this(queueCapacity, null);
+    }
+
+    public BatchingWidgetsService(WidgetsLog log) {
+        this(DEFAULT_QUEUE_CAPACITY, log);
+    }
+
+    public BatchingWidgetsService(int queueCapacity, WidgetsLog log) {
+        this(queueCapacity, log, WidgetIdGenerator.UUIDS);
+    }
+
+    public BatchingWidgetsService(int queueCapacity, WidgetsLog log, WidgetIdGenerator idGenerator) {
+        super(idGenerator);
+        this.log = log;
+
+        if (log == null) {
+            this.widgets = WidgetsSnapshot.EMPTY;
+        } else {
+            this.bootWidgets = log.mapSnapshot();
+
+            if (bootWidgets == null) {
+                this.widgets = log.recover();
+            }
+        }
+
+        this.mutations = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::applyMutations, "widgets-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    protected WidgetsView currentSnapshot() {
+        WidgetsView bootWidgets = this.bootWidgets;
+        WidgetsSnapshot widgets = this.widgets;
+
+        return (widgets != null) ? widgets : bootWidgets;
+    }
+
+    @Override
+    public Widget createWidget(WidgetDTO widgetDTO) {
+        return submit(new Mutation<Widget>() {
+            @Override
+            WidgetsSnapshot apply(WidgetsSnapshot widgets) {
+                value = createWidget(widgets, widgetDTO, null);
+                logPut(value);
+                return widgets.withWidget(value);
+            }
+        });
+    }
+
+    @Override
+    public Widget updateWidget(String id, WidgetDTO widgetDTO) {
+        return submit(new Mutation<Widget>() {
+            @Override
+            WidgetsSnapshot apply(WidgetsSnapshot widgets) {
+                if (!widgets.containsWidget(id)) {
+                    throw new WidgetNotFoundException(id);
+                }
+
+                value = createWidget(widgets, widgetDTO, id);
+                logPut(value);
+                return widgets.withWidget(value);
+            }
+        });
+    }
+
+    @Override
+    public boolean deleteWidget(String id) {
+        return submit(new Mutation<Boolean>() {
+            @Override
+            WidgetsSnapshot apply(WidgetsSnapshot widgets) {
+                if (!widgets.containsWidget(id)) {
+                    throw new WidgetNotFoundException(id);
+                }
+
+                value = true;
+                logDelete(id);
+                return widgets.withoutWidget(id);
+            }
+        });
+    }
+
+    @Override
+    public List<Widget> applyBatch(List<WidgetOperation> operations) {
+        return submit(new Mutation<List<Widget>>() {
+            @Override
+            WidgetsSnapshot apply(WidgetsSnapshot widgets) {
+                List<Widget> results = new ArrayList<>(operations.size());
+                WidgetsSnapshot newWidgets = applyOperations(widgets, operations, results);
+
+                for (int i = 0; i < operations.size(); i++) {
+                    if (operations.get(i).getType() == WidgetOperation.Type.DELETE) {
+                        logDelete(results.get(i).getId());
+                    } else {
+                        logPut(results.get(i));
+                    }
+                }
+
+                value = results;
+                return newWidgets;
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+
+        // Wakes the writer up; interrupting it instead would close the log's file channel. A full
+        // queue means the writer is not waiting for mutations, or has already died
+        mutations.offer(new Mutation<Void>() {
+            @Override
+            WidgetsSnapshot apply(WidgetsSnapshot widgets) {
+                return widgets;
+            }
+        });
+
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> T submit(Mutation<T> mutation) {
+        if (closed) {
+            throw new IllegalStateException("Widgets writer is closed");
+        }
+
+        try {
+            while (!mutations.offer(mutation, 100, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    throw new IllegalStateException("Widgets writer is closed");
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting a widget mutation", ex);
+        }
+
+        // The writer may have drained the queue for the last time just before the mutation got in
+        if (closed && mutations.remove(mutation)) {
+            throw new IllegalStateException("Widgets writer is closed");
+        }
+
+        try {
+            return mutation.result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw ex;
+        }
+    }
+
+    private void applyMutations() {
+        List<Mutation<?>> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        if (widgets == null) {
+            try {
+                widgets = log.recover();
+                bootWidgets = null;
+            } catch (RuntimeException ex) {
+                closed = true;
+                failQueuedMutations(ex);
+                log.close();
+                return;
+            }
+        }
+
+        // Whatever ends the loop, callers waiting on a mutation must not hang
+        try {
+            while (!closed) {
+                try {
+                    batch.add(mutations.take());
+                } catch (InterruptedException ex) {
+                    break;
+                }
+
+                mutations.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                WidgetsSnapshot newWidgets = widgets;
+
+                for (Mutation<?> mutation : batch) {
+                    try {
+                        WidgetsSnapshot appliedWidgets = mutation.apply(newWidgets);
+
+                        if (log != null) {
+                            log.endMutation();
+                        }
+
+                        newWidgets = appliedWidgets;
+                    } catch (RuntimeException ex) {
+                        mutation.failure = ex;
+                    }
+                }
+
+                try {
+                    if (log != null) {
+                        log.endBatch(newWidgets);
+                    }
+
+                    widgets = newWidgets;
+                } catch (RuntimeException ex) {
+                    for (Mutation<?> mutation : batch) {
+                        if (mutation.failure == null) {
+                            mutation.failure = ex;
+                        }
+                    }
+                }
+
+                for (Mutation<?> mutation : batch) {
+                    mutation.complete();
+                }
+
+                batch.clear();
+            }
+        } finally {
+            closed = true;
+            RuntimeException failure = new IllegalStateException("Widgets writer is closed");
+
+            for (Mutation<?> mutation : batch) {
+                mutation.failure = failure;
+                mutation.complete();
+            }
+
+            failQueuedMutations(failure);
+
+            if (log != null) {
+                log.close();
+            }
+        }
+    }
+
+    private void failQueuedMutations(RuntimeException failure) {
+        for (Mutation<?> mutation; (mutation = mutations.poll()) != null; ) {
+            mutation.failure = failure;
+            mutation.complete();
+        }
+    }
+
+    private void logPut(Widget widget) {
+        if (log != null) {
+            log.put(widget);
+        }
+    }
+
+    private void logDelete(String id) {
+        if (log != null) {
+            log.delete(id);
+        }
+    }
+
+    private abstract static class Mutation<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        T value;
+        RuntimeException failure;
+
+        abstract WidgetsSnapshot apply(WidgetsSnapshot widgets);
+
+        void complete() {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.miro.board.service;
+
+import com.miro.board.model.exception.BoardNotFoundException;
+
+public interface BoardsService {
+    /**
+     * A board that was written to, opened from storage if it is not open.
+     *
+     * @throws BoardNotFoundException if nothing was ever written to the board
+     */
+    WidgetsService getBoard(String boardId);
+
+    /**
+     * The board to write to, created if nothing was written to it yet.
+     */
+    WidgetsService getOrCreateBoard(String boardId);
+}
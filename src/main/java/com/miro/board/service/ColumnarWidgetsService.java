@@ -0,0 +1,177 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.model.WidgetOperation;
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
+import com.miro.board.model.exception.WidgetNotFoundException;
+import com.miro.board.storage.ColumnarWidgets;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the board in {@link ColumnarWidgets}, a few dozen bytes per widget instead of several
+ * hundred for the snapshot engines. The columns are mutated in place, so reads and writes take
+ * a read-write lock and reads return copies. A batch is applied to a copy of the columns and
+ * swapped in only when every operation succeeded.
+ */
+public class ColumnarWidgetsService implements WidgetsService {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final WidgetIdGenerator idGenerator;
+
+    private ColumnarWidgets widgets = new ColumnarWidgets();
+    private long version;
+
+    public ColumnarWidgetsService() {
+        this(WidgetIdGenerator.UUIDS);
+    }
+
+    public ColumnarWidgetsService(WidgetIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public Collection<Widget> getWidgets() {
+        return read(() -> new ArrayList<>(widgets.getWidgets()));
+    }
+
+    @Override
+    public Collection<Widget> getWidgets(Area area) {
+        return read(() -> widgets.getWidgets(area));
+    }
+
+    @Override
+    public WidgetsPage getWidgets(WidgetsCursor after, int limit) {
+        return WidgetsPage.of(read(() -> {
+            int afterZ = WidgetsCursor.afterZ(after, widgets::getWidget);
+
+            return widgets.getWidgets(afterZ, limit + 1);
+        }), limit);
+    }
+
+    @Override
+    public Widget getWidget(String id) {
+        Widget widget = read(() -> widgets.getWidget(id));
+
+        if (widget == null) {
+            throw new WidgetNotFoundException(id);
+        }
+
+        return widget;
+    }
+
+    @Override
+    public Widget createWidget(WidgetDTO widgetDTO) {
+        return write(() -> putWidget(widgets, idGenerator.nextId(), widgetDTO));
+    }
+
+    @Override
+    public Widget updateWidget(String id, WidgetDTO widgetDTO) {
+        return write(() -> {
+            if (!widgets.containsWidget(id)) {
+                throw new WidgetNotFoundException(id);
+            }
+
+            return putWidget(widgets, id, widgetDTO);
+        });
+    }
+
+    @Override
+    public boolean deleteWidget(String id) {
+        return write(() -> {
+            if (!widgets.remove(id)) {
+                throw new WidgetNotFoundException(id);
+            }
+
+            return true;
+        });
+    }
+
+    @Override
+    public List<Widget> applyBatch(List<WidgetOperation> operations) {
+        SnapshotWidgetsService.checkOperations(operations);
+
+        return write(() -> {
+            ColumnarWidgets newWidgets = widgets.copy();
+            List<Widget> results = new ArrayList<>(operations.size());
+
+            for (WidgetOperation operation : operations) {
+                if (operation.getType() != WidgetOperation.Type.CREATE
+                        && !newWidgets.containsWidget(operation.getId())) {
+                    throw new WidgetNotFoundException(operation.getId());
+                }
+
+                if (operation.getType() == WidgetOperation.Type.DELETE) {
+                    results.add(newWidgets.getWidget(operation.getId()));
+                    newWidgets.remove(operation.getId());
+                } else {
+                    String id = (operation.getType() == WidgetOperation.Type.CREATE)
+                            ? idGenerator.nextId() : operation.getId();
+                    results.add(putWidget(newWidgets, id, operation.getWidget()));
+                }
+            }
+
+            widgets = newWidgets;
+
+            return results;
+        });
+    }
+
+    @Override
+    public long getVersion() {
+        return read(() -> version);
+    }
+
+    @Override
+    public WidgetsChanges getChanges(long since) {
+        return read(() -> (since == version)
+                ? WidgetsChanges.none(since) : WidgetsChanges.resync(version, widgets.getWidgets()));
+    }
+
+    private static Widget putWidget(ColumnarWidgets widgets, String id, WidgetDTO widgetDTO) {
+        Integer z = widgetDTO.getZ();
+
+        if (z == null) {
+            z = widgets.nextZ(id);
+        }
+
+        Widget widget = new Widget(id, widgetDTO.getX(), widgetDTO.getY(), z,
+                widgetDTO.getWidth(), widgetDTO.getHeight(), ColumnarWidgets.truncate(LocalDateTime.now()));
+        widgets.put(widget);
+
+        return widget;
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+
+        try {
+            T result = action.get();
+            version++;
+
+            return result;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.miro.board.service;
+
+import com.miro.board.model.exception.BoardNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Keeps an independent {@link WidgetsService} per board, so writes to
+ * different boards never contend on the same storage root.
+ * The board behind the legacy {@code /widgets} endpoints is registered as {@link #DEFAULT_BOARD_ID}.
+ *
+ * <p>Only writes create boards. When boards are kept in storage, {@code storedBoards} tells which
+ * ones were written to, reads open those, and a board nobody looked up for {@code idleMillis} is
+ * closed, releasing its threads, files and MBeans, unless {@code busyBoards} says it is in use.
+ * Boards held only in memory stay open, since closing them would lose their widgets.
+ */
+public class DefaultBoardsService implements BoardsService, AutoCloseable {
+    public static final String DEFAULT_BOARD_ID = "default";
+
+    private static final Logger logger = LoggerFactory.getLogger(DefaultBoardsService.class);
+
+    private final ConcurrentMap<String, Board> boards = new ConcurrentHashMap<>();
+    private final Function<String, WidgetsService> boardFactory;
+    private final Predicate<String> storedBoards;
+    private final Predicate<WidgetsService> busyBoards;
+    private final long idleMillis;
+    private final ScheduledExecutorService sweeper;
+
+    public DefaultBoardsService(WidgetsService defaultBoard, Function<String, WidgetsService> boardFactory) {
+        this(defaultBoard, boardFactory, boardId -> false, board -> false, 0);
+    }
+
+    public DefaultBoardsService(WidgetsService defaultBoard, Function<String, WidgetsService> boardFactory,
+                                Predicate<String> storedBoards, Predicate<WidgetsService> busyBoards,
+                                long idleMillis) {
+        this.boardFactory = boardFactory;
+        this.storedBoards = storedBoards;
+        this.busyBoards = busyBoards;
+        this.idleMillis = idleMillis;
+        this.boards.put(DEFAULT_BOARD_ID, new Board(defaultBoard));
+
+        if (idleMillis > 0) {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "widgets-boards");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.sweeper.scheduleWithFixedDelay(this::closeIdleBoards, idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    @Override
+    public WidgetsService getBoard(String boardId) {
+        return board(boardId, false);
+    }
+
+    @Override
+    public WidgetsService getOrCreateBoard(String boardId) {
+        return board(boardId, true);
+    }
+
+    /**
+     * Closes every open board whose last lookup is older than {@code idleMillis}. A board is closed
+     * while its map entry is locked, so it cannot be opened again before its storage is released.
+     */
+    void closeIdleBoards() {
+        long idleSince = System.currentTimeMillis() - idleMillis;
+
+        for (String boardId : boards.keySet()) {
+            if (boardId.equals(DEFAULT_BOARD_ID)) {
+                continue;
+            }
+
+            boards.computeIfPresent(boardId, (id, board) -> {
+                if (!board.isIdleSince(idleSince) || busyBoards.test(board.widgets) || !board.evict(idleSince)) {
+                    return board;
+                }
+
+                close(id, board.widgets);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Closes the boards whose storage holds resources, such as a writer thread or a log.
+     */
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+
+        boards.forEach((boardId, board) -> close(boardId, board.widgets));
+    }
+
+    int openBoards() {
+        return boards.size();
+    }
+
+    private WidgetsService board(String boardId, boolean create) {
+        while (true) {
+            Board board = boards.get(boardId);
+
+            if (board == null) {
+                if (!create && !storedBoards.test(boardId)) {
+                    throw new BoardNotFoundException(boardId);
+                }
+
+                // Waits for the board to be closed, if that is what just removed it
+                board = boards.computeIfAbsent(boardId, id -> new Board(boardFactory.apply(id)));
+            }
+
+            if (board.touch()) {
+                return board.widgets;
+            }
+
+            // Being closed by the sweeper, which removes the entry before anyone else can see it again
+            boards.remove(boardId, board);
+        }
+    }
+
+    private static void close(String boardId, WidgetsService widgets) {
+        if (widgets instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) widgets).close();
+            } catch (Exception ex) {
+                logger.warn("Failed to close board {}", boardId, ex);
+            }
+        }
+    }
+
+    /**
+     * An open board and when it was last looked up, or {@link #EVICTED} once it is being closed.
+     */
+    private static final class Board {
+        private static final long EVICTED = Long.MIN_VALUE;
+
+        private final WidgetsService widgets;
+        private final AtomicLong lastUsed = new AtomicLong(System.currentTimeMillis());
+
+        Board(WidgetsService widgets) {
+            this.widgets = widgets;
+        }
+
+        boolean touch() {
+            long now = System.currentTimeMillis();
+
+            return lastUsed.getAndUpdate(used -> (used == EVICTED) ? EVICTED : now) != EVICTED;
+        }
+
+        boolean isIdleSince(long since) {
+            long used = lastUsed.get();
+
+            return used != EVICTED && used < since;
+        }
+
+        /**
+         * Marks the board as closed, unless it was looked up after {@code since}.
+         */
+        boolean evict(long since) {
+            long used = lastUsed.get();
+
+            return used != EVICTED && used < since && lastUsed.compareAndSet(used, EVICTED);
+        }
+    }
+}
@@ -2,148 +2,141 @@ package com.miro.board.service;
 
 import com.miro.board.model.Widget;
 import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.model.WidgetOperation;
+import com.miro.board.model.WidgetsChanges;
 import com.miro.board.model.exception.WidgetNotFoundException;
-import org.springframework.stereotype.Service;
+import com.miro.board.storage.WidgetsChangeLog;
+import com.miro.board.storage.WidgetsSnapshot;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
-@Service
-public class DefaultWidgetsService implements WidgetsService {
-    private static final AtomicReference<Map<String, Widget>> widgets
-            = new AtomicReference<>(Collections.unmodifiableMap(new LinkedHashMap<>()));
+/**
+ * Publishes snapshots by compare-and-set. Every attempt is recorded in a {@link WidgetsChangeLog}
+ * before it is published, so the changes since a recent version come from the log.
+ */
+public class DefaultWidgetsService extends SnapshotWidgetsService {
+    public static final int DEFAULT_CHANGE_LOG_SIZE = 10_000;
 
-    @Override
-    public Collection<Widget> getWidgets() {
-        return widgets.get().values();
+    private final AtomicReference<WidgetsSnapshot> widgets
+            = new AtomicReference<>(WidgetsSnapshot.EMPTY);
+    private final WidgetsMetrics metrics;
+    private final WidgetsChangeLog changeLog;
+
+    public DefaultWidgetsService() {
+        this(WidgetsMetrics.NONE);
     }
 
-    @Override
-    public Widget getWidget(String id) {
-        if (!widgets.get().containsKey(id)) {
-            throw new WidgetNotFoundException(id);
-        }
+    public DefaultWidgetsService(WidgetsMetrics metrics) {
+        this(metrics, DEFAULT_CHANGE_LOG_SIZE);
+    }
+
+    public DefaultWidgetsService(WidgetsMetrics metrics, int changeLogSize) {
+        this(metrics, changeLogSize, WidgetIdGenerator.UUIDS);
+    }
 
-        return widgets.get().get(id);
+    public DefaultWidgetsService(WidgetsMetrics metrics, int changeLogSize, WidgetIdGenerator idGenerator) {
+        super(idGenerator);
+        this.metrics = metrics;
+        this.changeLog = new WidgetsChangeLog(changeLogSize);
+    }
+
+    @Override
+    protected WidgetsSnapshot currentSnapshot() {
+        return widgets.get();
     }
 
     @Override
     public Widget createWidget(WidgetDTO widgetDTO) {
-        Map<String, Widget> actualWidgets, newWidgets;
+        WidgetsMetrics.Sample sample = metrics.start();
+        WidgetsSnapshot actualWidgets, newWidgets;
         Widget newWidget;
+        int attempts = 0;
 
         do {
+            attempts++;
             actualWidgets = widgets.get();
             newWidget = createWidget(actualWidgets, widgetDTO, null);
-            newWidgets = insertWidget(actualWidgets, newWidget);
+            newWidgets = actualWidgets.withWidget(newWidget);
+            changeLog.recordPut(actualWidgets, newWidgets, newWidget, true);
         } while (!widgets.compareAndSet(actualWidgets, newWidgets));
 
+        sample.stop(WidgetsMetrics.Write.CREATE, actualWidgets, newWidgets, attempts);
+
         return newWidget;
     }
 
     @Override
     public Widget updateWidget(String id, WidgetDTO widgetDTO) {
-        if (!widgets.get().containsKey(id)) {
+        if (!widgets.get().containsWidget(id)) {
             throw new WidgetNotFoundException(id);
         }
 
-        Map<String, Widget> actualWidgets, newWidgets;
+        WidgetsMetrics.Sample sample = metrics.start();
+        WidgetsSnapshot actualWidgets, newWidgets;
         Widget newWidget;
+        int attempts = 0;
 
         do {
+            attempts++;
             actualWidgets = widgets.get();
             newWidget = createWidget(actualWidgets, widgetDTO, id);
-            newWidgets = insertWidget(actualWidgets, newWidget);
+            newWidgets = actualWidgets.withWidget(newWidget);
+            changeLog.recordPut(actualWidgets, newWidgets, newWidget, false);
         } while (!widgets.compareAndSet(actualWidgets, newWidgets));
 
+        sample.stop(WidgetsMetrics.Write.UPDATE, actualWidgets, newWidgets, attempts);
+
         return newWidget;
     }
 
     @Override
     public boolean deleteWidget(String id) {
-        if (!widgets.get().containsKey(id)) {
+        if (!widgets.get().containsWidget(id)) {
             throw new WidgetNotFoundException(id);
         }
 
-        Map<String, Widget> actualWidgets, newWidgets;
+        WidgetsMetrics.Sample sample = metrics.start();
+        WidgetsSnapshot actualWidgets, newWidgets;
         boolean isDeleted;
+        int attempts = 0;
 
         do {
+            attempts++;
             actualWidgets = widgets.get();
-            newWidgets = new LinkedHashMap<>(actualWidgets);
-            isDeleted = (newWidgets.remove(id) != null);
+            newWidgets = actualWidgets.withoutWidget(id);
+            changeLog.recordDelete(actualWidgets, newWidgets, id);
+            isDeleted = (newWidgets != actualWidgets);
         } while (!widgets.compareAndSet(actualWidgets, newWidgets));
 
+        sample.stop(WidgetsMetrics.Write.DELETE, actualWidgets, newWidgets, attempts);
+
         return isDeleted;
     }
 
-    private Widget createWidget(Map<String, Widget> widgets,
-                                WidgetDTO widgetDTO,
-                                String id) {
-        Integer z = widgetDTO.getZ();
-
-        if (z == null) {
-            z = 1;
+    @Override
+    public List<Widget> applyBatch(List<WidgetOperation> operations) {
+        WidgetsMetrics.Sample sample = metrics.start();
+        WidgetsSnapshot actualWidgets, newWidgets;
+        List<Widget> results;
+        int attempts = 0;
 
-            for (Map.Entry<String, Widget> widgetEntry : widgets.entrySet()) {
-                if (widgetEntry.getValue().getId().equals(id)) {
-                    continue;
-                }
+        do {
+            attempts++;
+            actualWidgets = widgets.get();
+            results = new ArrayList<>(operations.size());
+            newWidgets = applyOperations(actualWidgets, operations, results, changeLog);
+        } while (!widgets.compareAndSet(actualWidgets, newWidgets));
 
-                z = widgetEntry.getValue().getZ() + 1;
-            }
-        }
+        sample.stop(WidgetsMetrics.Write.BATCH, actualWidgets, newWidgets, attempts);
 
-        return new Widget(id, widgetDTO.getX(), widgetDTO.getY(), z,
-                widgetDTO.getWidth(), widgetDTO.getHeight());
+        return results;
     }
 
-    private Map<String, Widget> insertWidget(Map<String, Widget> widgets,
-                                             Widget newWidget) {
-        Map<String, Widget> newWidgetsById = new LinkedHashMap<>();
-
-        boolean newWidgetAdded = false, shiftModeOn = false;
-        Integer zInShiftMode = newWidget.getZ();
-
-        for (Widget widget : widgets.values()) {
-            if (widget.getId().equals(newWidget.getId())
-                    && !widget.getZ().equals(newWidget.getZ())) {
-                continue;
-            }
-
-            if (!newWidgetAdded && widget.getZ() >= newWidget.getZ()) {
-                newWidgetsById.put(newWidget.getId(), newWidget);
-                newWidgetAdded = true;
-
-                if (widget.getId().equals(newWidget.getId())) {
-                    continue;
-                }
-
-                shiftModeOn = widget.getZ().equals(newWidget.getZ());
-            }
-
-            Widget widgetToAdd = widget;
-
-            if (shiftModeOn) {
-                if (!widgetToAdd.getZ().equals(zInShiftMode)) {
-                    shiftModeOn = false;
-                } else {
-                    zInShiftMode++;
-
-                    widgetToAdd = new Widget(widgetToAdd.getId(),
-                            widgetToAdd.getX(), widgetToAdd.getY(),
-                            zInShiftMode, widgetToAdd.getWidth(),
-                            widgetToAdd.getHeight());
-                }
-            }
-
-            newWidgetsById.put(widgetToAdd.getId(), widgetToAdd);
-        }
-
-        if (!newWidgetAdded) {
-            newWidgetsById.put(newWidget.getId(), newWidget);
-        }
-
-        return newWidgetsById;
+    @Override
+    public WidgetsChanges getChanges(long since) {
+        return changeLog.changesSince(since, widgets.get());
     }
 }
@@ -0,0 +1,209 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.model.WidgetOperation;
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
+import com.miro.board.model.exception.WidgetNotFoundException;
+import com.miro.board.repository.BoardEntity;
+import com.miro.board.repository.BoardsRepository;
+import com.miro.board.repository.WidgetEntity;
+import com.miro.board.repository.WidgetsRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps one board in the {@code widget} table. A z collision shifts the whole run above it
+ * with one set-based {@code UPDATE ... WHERE z BETWEEN}. Each write runs in its own transaction,
+ * so a failed write leaves the table untouched, and first locks the board's {@code board} row,
+ * so writes of one board are serialized even across services and application instances.
+ */
+public class JpaWidgetsService implements WidgetsService {
+    private final String boardId;
+    private final WidgetsRepository widgetsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final WidgetIdGenerator idGenerator;
+    private final BoardsRepository boardsRepository;
+    private volatile boolean boardStored;
+
+    public JpaWidgetsService(String boardId,
+                             BoardsRepository boardsRepository,
+                             WidgetsRepository widgetsRepository,
+                             TransactionTemplate transactionTemplate) {
+        this(boardId, boardsRepository, widgetsRepository, transactionTemplate, WidgetIdGenerator.UUIDS);
+    }
+
+    public JpaWidgetsService(String boardId,
+                             BoardsRepository boardsRepository,
+                             WidgetsRepository widgetsRepository,
+                             TransactionTemplate transactionTemplate,
+                             WidgetIdGenerator idGenerator) {
+        this.boardId = boardId;
+        this.boardsRepository = boardsRepository;
+        this.widgetsRepository = widgetsRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public Collection<Widget> getWidgets() {
+        return toWidgets(widgetsRepository.findByBoardIdOrderByZ(boardId));
+    }
+
+    @Override
+    public Collection<Widget> getWidgets(Area area) {
+        return toWidgets(widgetsRepository.findInArea(boardId,
+                area.getX1(), area.getY1(), area.getX2(), area.getY2()));
+    }
+
+    @Override
+    public WidgetsPage getWidgets(WidgetsCursor after, int limit) {
+        int afterZ = WidgetsCursor.afterZ(after, id -> widgetsRepository.findByBoardIdAndId(boardId, id)
+                .map(WidgetEntity::toWidget)
+                .orElse(null));
+        List<WidgetEntity> entities = widgetsRepository.findByBoardIdAndZGreaterThanOrderByZ(
+                boardId, afterZ, PageRequest.of(0, limit + 1));
+
+        return WidgetsPage.of(toWidgets(entities), limit);
+    }
+
+    @Override
+    public Widget getWidget(String id) {
+        return findWidget(id).toWidget();
+    }
+
+    @Override
+    public Widget createWidget(WidgetDTO widgetDTO) {
+        return write(() -> saveWidget(idGenerator.nextId(), widgetDTO));
+    }
+
+    @Override
+    public Widget updateWidget(String id, WidgetDTO widgetDTO) {
+        return write(() -> {
+            findWidget(id);
+            return saveWidget(id, widgetDTO);
+        });
+    }
+
+    @Override
+    public boolean deleteWidget(String id) {
+        return write(() -> {
+            if (widgetsRepository.deleteByBoardIdAndId(boardId, id) == 0) {
+                throw new WidgetNotFoundException(id);
+            }
+
+            return true;
+        });
+    }
+
+    @Override
+    public List<Widget> applyBatch(List<WidgetOperation> operations) {
+        SnapshotWidgetsService.checkOperations(operations);
+
+        return write(() -> {
+            List<Widget> results = new ArrayList<>(operations.size());
+
+            for (WidgetOperation operation : operations) {
+                if (operation.getType() == WidgetOperation.Type.CREATE) {
+                    results.add(saveWidget(idGenerator.nextId(), operation.getWidget()));
+                } else if (operation.getType() == WidgetOperation.Type.UPDATE) {
+                    findWidget(operation.getId());
+                    results.add(saveWidget(operation.getId(), operation.getWidget()));
+                } else {
+                    results.add(findWidget(operation.getId()).toWidget());
+                    widgetsRepository.deleteByBoardIdAndId(boardId, operation.getId());
+                }
+            }
+
+            return results;
+        });
+    }
+
+    /**
+     * Other instances may write to the same table, so changes are not counted here.
+     */
+    @Override
+    public long getVersion() {
+        return -1;
+    }
+
+    @Override
+    public WidgetsChanges getChanges(long since) {
+        return WidgetsChanges.resync(-1, getWidgets());
+    }
+
+    private <T> T write(Supplier<T> action) {
+        storeBoard();
+
+        return transactionTemplate.execute(status -> {
+            boardsRepository.lockById(boardId)
+                    .orElseThrow(() -> new IllegalStateException("Board row is missing: " + boardId));
+            return action.get();
+        });
+    }
+
+    /**
+     * Inserts the board row that writes lock, once per service. When a concurrent writer
+     * inserts it first, there is nothing left to do.
+     */
+    private void storeBoard() {
+        if (boardStored) {
+            return;
+        }
+
+        if (!boardsRepository.existsById(boardId)) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        boardsRepository.saveAndFlush(new BoardEntity(boardId)));
+            } catch (DataIntegrityViolationException e) {
+                // Stored by a concurrent writer
+            }
+        }
+
+        boardStored = true;
+    }
+
+    private Widget saveWidget(String id, WidgetDTO widgetDTO) {
+        // Millisecond precision survives a round trip through any TIMESTAMP column
+        LocalDateTime lastModified = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        Integer z = widgetDTO.getZ();
+
+        if (z == null) {
+            Integer maxZ = widgetsRepository.findMaxZ(boardId, id);
+            z = (maxZ == null) ? 1 : maxZ + 1;
+        } else if (widgetsRepository.existsByBoardIdAndZAndIdNot(boardId, z, id)) {
+            int runEnd = widgetsRepository.findRunEnd(boardId, z, id);
+            widgetsRepository.shiftUp(boardId, z, runEnd, id, lastModified);
+        }
+
+        Widget widget = new Widget(id, widgetDTO.getX(), widgetDTO.getY(), z,
+                widgetDTO.getWidth(), widgetDTO.getHeight(), lastModified);
+        widgetsRepository.save(new WidgetEntity(boardId, widget));
+
+        return widget;
+    }
+
+    private WidgetEntity findWidget(String id) {
+        return widgetsRepository.findByBoardIdAndId(boardId, id)
+                .orElseThrow(() -> new WidgetNotFoundException(id));
+    }
+
+    private static List<Widget> toWidgets(List<WidgetEntity> entities) {
+        return entities.stream()
+                .map(WidgetEntity::toWidget)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,141 @@
+package com.miro.board.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the writes of one board to Micrometer, tagged with the board id:
+ * <ul>
+ *     <li>{@code widgets.writes}: time per write, by operation;</li>
+ *     <li>{@code widgets.write.retries}: compare-and-set attempts lost to concurrent writes, by operation;</li>
+ *     <li>{@code widgets.write.shifted}: widgets pushed up per write;</li>
+ *     <li>{@code widgets.write.renumbered}: widgets whose order keys were spread again per write;</li>
+ *     <li>{@code widgets.write.allocated}: bytes allocated by the writing thread per write,
+ *     when the JVM can tell;</li>
+ *     <li>{@code widgets.size} and {@code widgets.version}: widgets on the board and changes made to it.</li>
+ * </ul>
+ * Every board tag adds a set of series, and percentile histograms add dozens of buckets to each
+ * timer and summary, so both are opted into: see {@link #forBoard}.
+ */
+public class MicrometerWidgetsMetrics implements WidgetsMetrics {
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCountingThreads();
+
+    private final Map<Write, Timer> writeTimers = new EnumMap<>(Write.class);
+    private final Map<Write, Counter> writeRetries = new EnumMap<>(Write.class);
+    private final DistributionSummary shiftedWidgets;
+    private final DistributionSummary renumberedWidgets;
+    private final DistributionSummary allocatedBytes;
+
+    private volatile long size;
+    private volatile long version;
+
+    public MicrometerWidgetsMetrics(MeterRegistry registry, String boardId) {
+        this(registry, boardId, false);
+    }
+
+    /**
+     * With {@code histograms}, write times, shifts and allocations publish percentile histograms.
+     */
+    public MicrometerWidgetsMetrics(MeterRegistry registry, String boardId, boolean histograms) {
+        for (Write write : Write.values()) {
+            String operation = write.name().toLowerCase(Locale.ROOT);
+
+            writeTimers.put(write, Timer.builder("widgets.writes")
+                    .description("Time spent in a write, retries included")
+                    .tags("board", boardId, "operation", operation)
+                    .publishPercentileHistogram(histograms)
+                    .register(registry));
+            writeRetries.put(write, Counter.builder("widgets.write.retries")
+                    .description("Write attempts that lost the compare-and-set to a concurrent write")
+                    .tags("board", boardId, "operation", operation)
+                    .register(registry));
+        }
+
+        shiftedWidgets = DistributionSummary.builder("widgets.write.shifted")
+                .description("Widgets pushed up by a write")
+                .baseUnit("widgets")
+                .tags("board", boardId)
+                .publishPercentileHistogram(histograms)
+                .register(registry);
+        renumberedWidgets = DistributionSummary.builder("widgets.write.renumbered")
+                .description("Widgets whose order keys were spread again by a write")
+                .baseUnit("widgets")
+                .tags("board", boardId)
+                .register(registry);
+        allocatedBytes = (THREADS == null) ? null : DistributionSummary.builder("widgets.write.allocated")
+                .description("Heap allocated by the writing thread during a write")
+                .baseUnit("bytes")
+                .tags("board", boardId)
+                .publishPercentileHistogram(histograms)
+                .register(registry);
+
+        Gauge.builder("widgets.size", this, metrics -> metrics.size)
+                .description("Widgets on the board")
+                .baseUnit("widgets")
+                .tags("board", boardId)
+                .register(registry);
+        Gauge.builder("widgets.version", this, metrics -> metrics.version)
+                .description("Changes made to the board")
+                .tags("board", boardId)
+                .register(registry);
+    }
+
+    /**
+     * Metrics of a board, or {@link WidgetsMetrics#NONE} when there is no registry or the board
+     * is not one of {@code boards}, so the number of series stays bounded however many boards exist.
+     */
+    public static WidgetsMetrics forBoard(MeterRegistry registry, String boardId, Collection<String> boards,
+                                          boolean histograms) {
+        return (registry == null || !boards.contains(boardId))
+                ? WidgetsMetrics.NONE : new MicrometerWidgetsMetrics(registry, boardId, histograms);
+    }
+
+    @Override
+    public Sample start() {
+        long startNanos = System.nanoTime();
+        long startAllocatedBytes = (THREADS == null) ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+
+        return (write, before, after, attempts) -> {
+            writeTimers.get(write).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+            // -1 when the JVM cannot tell, as for virtual threads on some JDKs
+            long endAllocatedBytes = (startAllocatedBytes < 0) ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+
+            if (endAllocatedBytes >= 0) {
+                allocatedBytes.record(endAllocatedBytes - startAllocatedBytes);
+            }
+
+            if (attempts > 1) {
+                writeRetries.get(write).increment(attempts - 1);
+            }
+
+            shiftedWidgets.record(after.getShiftedWidgets() - before.getShiftedWidgets());
+            renumberedWidgets.record(after.getRenumberedWidgets() - before.getRenumberedWidgets());
+
+            if (after.getVersion() > version) {
+                version = after.getVersion();
+                size = after.size();
+            }
+        };
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCountingThreads() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        return (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) ? threads : null;
+    }
+}
@@ -0,0 +1,273 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.model.WidgetOperation;
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
+import com.miro.board.model.exception.WidgetNotFoundException;
+import com.miro.board.storage.ColumnarWidgets;
+import com.miro.board.storage.OffHeapWidgets;
+
+import javax.management.JMException;
+import javax.management.MBeanRegistration;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the board in {@link OffHeapWidgets}, so the heap only holds the widgets of requests in
+ * flight. Reads and writes take a read-write lock. A batch is checked up front instead of being
+ * applied to a copy, which would double the off-heap memory of a large board: room for every
+ * create is reserved before the first write, so a batch can only fail on an update or delete of
+ * a widget that is missing or was deleted earlier in the same batch.
+ *
+ * <p>When registered as an MBean the board publishes its memory usage, and closing it
+ * unregisters the MBean and releases the buffers.
+ */
+public class OffHeapWidgetsService implements WidgetsService, OffHeapWidgetsServiceMXBean,
+        MBeanRegistration, AutoCloseable {
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final WidgetIdGenerator idGenerator;
+
+    private OffHeapWidgets widgets;
+    private long version;
+    private MBeanServer mBeanServer;
+    private ObjectName objectName;
+
+    public OffHeapWidgetsService() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public OffHeapWidgetsService(int initialCapacity) {
+        this(initialCapacity, WidgetIdGenerator.UUIDS);
+    }
+
+    public OffHeapWidgetsService(int initialCapacity, WidgetIdGenerator idGenerator) {
+        this.widgets = new OffHeapWidgets(initialCapacity);
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public Collection<Widget> getWidgets() {
+        return read(() -> new ArrayList<>(widgets.getWidgets()));
+    }
+
+    @Override
+    public Collection<Widget> getWidgets(Area area) {
+        return read(() -> widgets.getWidgets(area));
+    }
+
+    @Override
+    public WidgetsPage getWidgets(WidgetsCursor after, int limit) {
+        return WidgetsPage.of(read(() -> {
+            int afterZ = WidgetsCursor.afterZ(after, widgets::getWidget);
+
+            return widgets.getWidgets(afterZ, limit + 1);
+        }), limit);
+    }
+
+    @Override
+    public Widget getWidget(String id) {
+        Widget widget = read(() -> widgets.getWidget(id));
+
+        if (widget == null) {
+            throw new WidgetNotFoundException(id);
+        }
+
+        return widget;
+    }
+
+    @Override
+    public Widget createWidget(WidgetDTO widgetDTO) {
+        return write(() -> putWidget(idGenerator.nextId(), widgetDTO));
+    }
+
+    @Override
+    public Widget updateWidget(String id, WidgetDTO widgetDTO) {
+        return write(() -> {
+            if (!widgets.containsWidget(id)) {
+                throw new WidgetNotFoundException(id);
+            }
+
+            return putWidget(id, widgetDTO);
+        });
+    }
+
+    @Override
+    public boolean deleteWidget(String id) {
+        return write(() -> {
+            if (!widgets.remove(id)) {
+                throw new WidgetNotFoundException(id);
+            }
+
+            return true;
+        });
+    }
+
+    @Override
+    public List<Widget> applyBatch(List<WidgetOperation> operations) {
+        SnapshotWidgetsService.checkOperations(operations);
+
+        return write(() -> {
+            Set<String> deletedIds = new HashSet<>();
+            int creates = 0;
+
+            for (WidgetOperation operation : operations) {
+                if (operation.getType() == WidgetOperation.Type.CREATE) {
+                    creates++;
+                } else if (deletedIds.contains(operation.getId()) || !widgets.containsWidget(operation.getId())) {
+                    throw new WidgetNotFoundException(operation.getId());
+                }
+
+                if (operation.getType() == WidgetOperation.Type.DELETE) {
+                    deletedIds.add(operation.getId());
+                }
+            }
+
+            widgets.reserve(widgets.size() + creates);
+
+            List<Widget> results = new ArrayList<>(operations.size());
+
+            for (WidgetOperation operation : operations) {
+                if (operation.getType() == WidgetOperation.Type.DELETE) {
+                    results.add(widgets.getWidget(operation.getId()));
+                    widgets.remove(operation.getId());
+                } else {
+                    String id = (operation.getType() == WidgetOperation.Type.CREATE)
+                            ? idGenerator.nextId() : operation.getId();
+                    results.add(putWidget(id, operation.getWidget()));
+                }
+            }
+
+            return results;
+        });
+    }
+
+    @Override
+    public long getVersion() {
+        return read(() -> version);
+    }
+
+    @Override
+    public WidgetsChanges getChanges(long since) {
+        return read(() -> (since == version)
+                ? WidgetsChanges.none(since) : WidgetsChanges.resync(version, widgets.getWidgets()));
+    }
+
+    @Override
+    public int getWidgetCount() {
+        return read(() -> widgets.size());
+    }
+
+    @Override
+    public int getCapacity() {
+        return read(() -> widgets.capacity());
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return read(() -> widgets.allocatedBytes());
+    }
+
+    @Override
+    public long getUsedBytes() {
+        return read(() -> widgets.usedBytes());
+    }
+
+    @Override
+    public ObjectName preRegister(MBeanServer server, ObjectName name) {
+        this.mBeanServer = server;
+        this.objectName = name;
+
+        return name;
+    }
+
+    @Override
+    public void postRegister(Boolean registrationDone) {
+    }
+
+    @Override
+    public void preDeregister() {
+    }
+
+    @Override
+    public void postDeregister() {
+    }
+
+    /**
+     * Drops the buffers; their memory is returned once they are collected.
+     */
+    @Override
+    public void close() throws JMException {
+        lock.writeLock().lock();
+
+        try {
+            widgets = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (mBeanServer != null && mBeanServer.isRegistered(objectName)) {
+            mBeanServer.unregisterMBean(objectName);
+        }
+    }
+
+    private Widget putWidget(String id, WidgetDTO widgetDTO) {
+        Integer z = widgetDTO.getZ();
+
+        if (z == null) {
+            z = widgets.nextZ(id);
+        }
+
+        Widget widget = new Widget(id, widgetDTO.getX(), widgetDTO.getY(), z,
+                widgetDTO.getWidth(), widgetDTO.getHeight(), ColumnarWidgets.truncate(LocalDateTime.now()));
+        widgets.put(widget);
+
+        return widget;
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+
+        try {
+            checkNotClosed();
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+
+        try {
+            checkNotClosed();
+            T result = action.get();
+            version++;
+
+            return result;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkNotClosed() {
+        if (widgets == null) {
+            throw new IllegalStateException("Board is closed");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.miro.board.service;
+
+/**
+ * Memory usage of a board kept off-heap, published over JMX.
+ */
+public interface OffHeapWidgetsServiceMXBean {
+    int getWidgetCount();
+    int getCapacity();
+    long getAllocatedBytes();
+    long getUsedBytes();
+}
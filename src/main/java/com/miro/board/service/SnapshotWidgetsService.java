@@ -0,0 +1,169 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.model.WidgetOperation;
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
+import com.miro.board.model.exception.InvalidBatchException;
+import com.miro.board.model.exception.WidgetNotFoundException;
+import com.miro.board.storage.WidgetsChangeLog;
+import com.miro.board.storage.WidgetsSnapshot;
+import com.miro.board.storage.WidgetsView;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lock-free reads for services publishing immutable {@link WidgetsSnapshot}s.
+ * Subclasses only decide how writes produce and publish the next snapshot.
+ */
+abstract class SnapshotWidgetsService implements WidgetsService {
+    private final WidgetIdGenerator idGenerator;
+
+    protected SnapshotWidgetsService(WidgetIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    protected abstract WidgetsView currentSnapshot();
+
+    @Override
+    public Collection<Widget> getWidgets() {
+        return currentSnapshot().getWidgets();
+    }
+
+    @Override
+    public Collection<Widget> getWidgets(Area area) {
+        return currentSnapshot().getWidgets(area);
+    }
+
+    @Override
+    public WidgetsPage getWidgets(WidgetsCursor after, int limit) {
+        WidgetsView widgets = currentSnapshot();
+
+        return WidgetsPage.of(widgets.getWidgets(WidgetsCursor.afterZ(after, widgets::getWidget), limit + 1), limit);
+    }
+
+    @Override
+    public Widget getWidget(String id) {
+        Widget widget = currentSnapshot().getWidget(id);
+
+        if (widget == null) {
+            throw new WidgetNotFoundException(id);
+        }
+
+        return widget;
+    }
+
+    @Override
+    public boolean keepsWidgets() {
+        return true;
+    }
+
+    @Override
+    public long getVersion() {
+        return currentSnapshot().getVersion();
+    }
+
+    /**
+     * Boards that do not record their changes send the whole snapshot unless nothing changed.
+     */
+    @Override
+    public WidgetsChanges getChanges(long since) {
+        WidgetsView widgets = currentSnapshot();
+
+        return (since == widgets.getVersion())
+                ? WidgetsChanges.none(since) : WidgetsChanges.resync(widgets.getVersion(), widgets.getWidgets());
+    }
+
+    /**
+     * Applies the operations in order on top of {@code widgets}, collecting each operation's
+     * widget into {@code results} (the removed widget for a delete). Throws on the first
+     * operation that cannot be applied; the caller then publishes nothing. Created widgets
+     * always get a new id, so a create never replaces a widget.
+     */
+    protected WidgetsSnapshot applyOperations(WidgetsSnapshot widgets,
+                                              List<WidgetOperation> operations,
+                                              List<Widget> results) {
+        return applyOperations(widgets, operations, results, null);
+    }
+
+    /**
+     * Same as {@link #applyOperations(WidgetsSnapshot, List, List)}, recording every operation
+     * in {@code changeLog} when one is given.
+     */
+    protected WidgetsSnapshot applyOperations(WidgetsSnapshot widgets,
+                                              List<WidgetOperation> operations,
+                                              List<Widget> results,
+                                              WidgetsChangeLog changeLog) {
+        checkOperations(operations);
+
+        for (WidgetOperation operation : operations) {
+            if (operation.getType() != WidgetOperation.Type.CREATE && !widgets.containsWidget(operation.getId())) {
+                throw new WidgetNotFoundException(operation.getId());
+            }
+
+            WidgetsSnapshot newWidgets;
+
+            if (operation.getType() == WidgetOperation.Type.DELETE) {
+                results.add(widgets.getWidget(operation.getId()));
+                newWidgets = widgets.withoutWidget(operation.getId());
+
+                if (changeLog != null) {
+                    changeLog.recordDelete(widgets, newWidgets, operation.getId());
+                }
+            } else {
+                Widget newWidget = createWidget(widgets, operation.getWidget(), operation.getId());
+                results.add(newWidget);
+                newWidgets = widgets.withWidget(newWidget);
+
+                if (changeLog != null) {
+                    changeLog.recordPut(widgets, newWidgets, newWidget,
+                            operation.getType() == WidgetOperation.Type.CREATE);
+                }
+            }
+
+            widgets = newWidgets;
+        }
+
+        return widgets;
+    }
+
+    static void checkOperations(List<WidgetOperation> operations) {
+        for (int i = 0; i < operations.size(); i++) {
+            WidgetOperation operation = operations.get(i);
+
+            if (operation.getType() != WidgetOperation.Type.CREATE && operation.getId() == null) {
+                throw new InvalidBatchException("Operation " + i + " requires an id");
+            }
+
+            if (operation.getType() == WidgetOperation.Type.CREATE && operation.getId() != null) {
+                throw new InvalidBatchException("Operation " + i + " creates a widget, whose id is generated");
+            }
+
+            if (operation.getType() != WidgetOperation.Type.DELETE && operation.getWidget() == null) {
+                throw new InvalidBatchException("Operation " + i + " requires a widget");
+            }
+        }
+    }
+
+    /**
+     * The widget {@code widgetDTO} describes, replacing widget {@code id}, or a new widget
+     * when {@code id} is {@code null}.
+     */
+    protected Widget createWidget(WidgetsSnapshot widgets,
+                                  WidgetDTO widgetDTO,
+                                  String id) {
+        Integer z = widgetDTO.getZ();
+
+        if (z == null) {
+            z = widgets.nextZ(id);
+        }
+
+        return new Widget((id == null) ? idGenerator.nextId() : id, widgetDTO.getX(), widgetDTO.getY(), z,
+                widgetDTO.getWidth(), widgetDTO.getHeight());
+    }
+}
@@ -0,0 +1,33 @@
+package com.miro.board.service;
+
+import com.miro.board.storage.WidgetsSnapshot;
+
+/**
+ * What a board reports about its writes. {@link #NONE} records nothing and does not even read
+ * the clock, so an uninstrumented board pays for a couple of virtual calls per write.
+ */
+public interface WidgetsMetrics {
+    enum Write {
+        CREATE,
+        UPDATE,
+        DELETE,
+        BATCH
+    }
+
+    WidgetsMetrics NONE = () -> Sample.NONE;
+
+    /**
+     * Starts measuring a write made by the calling thread.
+     */
+    Sample start();
+
+    interface Sample {
+        Sample NONE = (write, before, after, attempts) -> {
+        };
+
+        /**
+         * Records a write that turned {@code before} into {@code after} on its {@code attempts}-th attempt.
+         */
+        void stop(Write write, WidgetsSnapshot before, WidgetsSnapshot after, int attempts);
+    }
+}
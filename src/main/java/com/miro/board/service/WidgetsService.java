@@ -1,14 +1,41 @@
 package com.miro.board.service;
 
+import com.miro.board.model.Area;
 import com.miro.board.model.Widget;
 import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetOperation;
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface WidgetsService {
     Collection<Widget> getWidgets();
+    Collection<Widget> getWidgets(Area area);
+    WidgetsPage getWidgets(WidgetsCursor after, int limit);
     Widget getWidget(String id);
     Widget createWidget(WidgetDTO widgetDTO);
     Widget updateWidget(String id, WidgetDTO widgetDTO);
     boolean deleteWidget(String id);
+    List<Widget> applyBatch(List<WidgetOperation> operations);
+
+    /**
+     * Grows with every change of the board, or is -1 when the board does not track its changes.
+     */
+    long getVersion();
+
+    /**
+     * Changes since version {@code since}, or a resync with every widget when the board cannot tell.
+     */
+    WidgetsChanges getChanges(long since);
+
+    /**
+     * Whether reads return the same widget instances until they change, so caching anything by
+     * instance pays off. Engines that build widgets on every read return {@code false}.
+     */
+    default boolean keepsWidgets() {
+        return false;
+    }
 }
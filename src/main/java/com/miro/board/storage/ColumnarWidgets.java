@@ -0,0 +1,354 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIds;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Mutable board kept in primitive columns instead of widget objects. Widget fields live in
+ * parallel arrays indexed by slot: ids as two longs (see {@link WidgetIds#toKey}), coordinates,
+ * sizes and z as ints, and last modification time as epoch millis in UTC. Slots are packed,
+ * {@code order} holds them sorted by z, and an open-addressing table maps ids to slots.
+ * {@link Widget}s are only created when read.
+ *
+ * <p>Inserting or deleting moves part of {@code order}, so writes are linear in the board size,
+ * but that is a single {@code arraycopy} of ints. Area queries scan the z order. Ids that are
+ * neither UUIDs nor snowflake ids are never stored, so looking one up simply finds nothing.
+ * Not thread-safe.
+ */
+public final class ColumnarWidgets implements WidgetsTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] idHigh = new long[INITIAL_CAPACITY];
+    private long[] idLow = new long[INITIAL_CAPACITY];
+    private int[] x = new int[INITIAL_CAPACITY];
+    private int[] y = new int[INITIAL_CAPACITY];
+    private int[] z = new int[INITIAL_CAPACITY];
+    private int[] width = new int[INITIAL_CAPACITY];
+    private int[] height = new int[INITIAL_CAPACITY];
+    private long[] lastModified = new long[INITIAL_CAPACITY];
+    private int[] order = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Slot plus one for every id, zero for a free entry. Kept at most half full.
+     */
+    private int[] slotsById = new int[INITIAL_CAPACITY * 2];
+
+    public ColumnarWidgets() {
+    }
+
+    private ColumnarWidgets(ColumnarWidgets widgets) {
+        idHigh = widgets.idHigh.clone();
+        idLow = widgets.idLow.clone();
+        x = widgets.x.clone();
+        y = widgets.y.clone();
+        z = widgets.z.clone();
+        width = widgets.width.clone();
+        height = widgets.height.clone();
+        lastModified = widgets.lastModified.clone();
+        order = widgets.order.clone();
+        size = widgets.size;
+        slotsById = widgets.slotsById.clone();
+    }
+
+    public ColumnarWidgets copy() {
+        return new ColumnarWidgets(this);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Widgets in z order, created as the list is read.
+     */
+    @Override
+    public List<Widget> getWidgets() {
+        return new AbstractList<Widget>() {
+            @Override
+            public Widget get(int index) {
+                return widgetAt(order[index]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public List<Widget> getWidgets(Area area) {
+        List<Widget> widgetsInArea = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+
+            if (x[slot] >= area.getX1() && y[slot] >= area.getY1()
+                    && (long) x[slot] + width[slot] <= area.getX2()
+                    && (long) y[slot] + height[slot] <= area.getY2()) {
+                widgetsInArea.add(widgetAt(slot));
+            }
+        }
+
+        return widgetsInArea;
+    }
+
+    @Override
+    public List<Widget> getWidgets(int afterZ, int limit) {
+        List<Widget> page = new ArrayList<>();
+
+        for (int i = rankAfter(afterZ); i < size && page.size() < limit; i++) {
+            page.add(widgetAt(order[i]));
+        }
+
+        return page;
+    }
+
+    @Override
+    public Widget getWidget(String id) {
+        int slot = slotOf(id);
+
+        return (slot < 0) ? null : widgetAt(slot);
+    }
+
+    @Override
+    public boolean containsWidget(String id) {
+        return slotOf(id) >= 0;
+    }
+
+    /**
+     * The z that puts a widget on top of every other widget except {@code excludedId}.
+     */
+    @Override
+    public int nextZ(String excludedId) {
+        int top = size - 1;
+
+        if (top >= 0 && order[top] == slotOf(excludedId)) {
+            top--;
+        }
+
+        return (top < 0) ? 1 : z[order[top]] + 1;
+    }
+
+    /**
+     * Inserts or replaces the widget. Widgets occupying {@code z, z + 1, ...} up to the first
+     * free z are pushed up and take the new widget's last modification time, as in
+     * {@link WidgetsSnapshot#withWidget}.
+     */
+    @Override
+    public void put(Widget widget) {
+        UUID id = WidgetIds.toKey(widget.getId());
+        long modifiedMillis = toMillis(widget.getLastModified());
+
+        if (size == order.length
+                && slotsById[entryOf(id.getMostSignificantBits(), id.getLeastSignificantBits())] == 0) {
+            grow();
+        }
+
+        removeWidget(id.getMostSignificantBits(), id.getLeastSignificantBits());
+
+        int newZ = widget.getZ();
+        int index = rankAfter((long) newZ - 1);
+
+        for (int i = index; i < size && z[order[i]] == newZ + (i - index); i++) {
+            z[order[i]]++;
+            lastModified[order[i]] = modifiedMillis;
+        }
+
+        int slot = size;
+        idHigh[slot] = id.getMostSignificantBits();
+        idLow[slot] = id.getLeastSignificantBits();
+        x[slot] = widget.getX();
+        y[slot] = widget.getY();
+        z[slot] = newZ;
+        width[slot] = widget.getWidth();
+        height[slot] = widget.getHeight();
+        lastModified[slot] = modifiedMillis;
+
+        System.arraycopy(order, index, order, index + 1, size - index);
+        order[index] = slot;
+        size++;
+
+        slotsById[freeEntry(idHigh[slot], idLow[slot])] = slot + 1;
+    }
+
+    @Override
+    public boolean remove(String id) {
+        UUID uuid = WidgetIds.toKey(id);
+
+        return uuid != null && removeWidget(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Last modification times are kept in millis, so this is the precision a stored widget keeps.
+     */
+    public static LocalDateTime truncate(LocalDateTime lastModified) {
+        return fromMillis(toMillis(lastModified));
+    }
+
+    private boolean removeWidget(long high, long low) {
+        int entry = entryOf(high, low);
+
+        if (slotsById[entry] == 0) {
+            return false;
+        }
+
+        int slot = slotsById[entry] - 1;
+        int index = rankAfter((long) z[slot] - 1);
+
+        System.arraycopy(order, index + 1, order, index, size - index - 1);
+        removeEntry(entry);
+        size--;
+
+        if (slot != size) {
+            moveSlot(size, slot);
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the last slot into a freed one, so slots stay packed.
+     */
+    private void moveSlot(int from, int to) {
+        idHigh[to] = idHigh[from];
+        idLow[to] = idLow[from];
+        x[to] = x[from];
+        y[to] = y[from];
+        z[to] = z[from];
+        width[to] = width[from];
+        height[to] = height[from];
+        lastModified[to] = lastModified[from];
+
+        order[rankAfter((long) z[to] - 1)] = to;
+        slotsById[entryOf(idHigh[to], idLow[to])] = to + 1;
+    }
+
+    /**
+     * Index in {@code order} of the first widget with z above {@code afterZ}.
+     */
+    private int rankAfter(long afterZ) {
+        int low = 0, high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (z[order[middle]] <= afterZ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private int slotOf(String id) {
+        UUID uuid = (id == null) ? null : WidgetIds.toKey(id);
+
+        if (uuid == null) {
+            return -1;
+        }
+
+        return slotsById[entryOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())] - 1;
+    }
+
+    /**
+     * The entry holding the id, or the free entry where its probe sequence ends.
+     */
+    private int entryOf(long high, long low) {
+        int mask = slotsById.length - 1;
+
+        for (int entry = hash(high, low) & mask; ; entry = (entry + 1) & mask) {
+            int slot = slotsById[entry] - 1;
+
+            if (slot < 0 || (idHigh[slot] == high && idLow[slot] == low)) {
+                return entry;
+            }
+        }
+    }
+
+    private int freeEntry(long high, long low) {
+        int mask = slotsById.length - 1;
+        int entry = hash(high, low) & mask;
+
+        while (slotsById[entry] != 0) {
+            entry = (entry + 1) & mask;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Frees the entry and shifts back the entries after it whose probe sequence passes through it.
+     */
+    private void removeEntry(int entry) {
+        int mask = slotsById.length - 1;
+        int free = entry;
+
+        for (int next = (free + 1) & mask; slotsById[next] != 0; next = (next + 1) & mask) {
+            int slot = slotsById[next] - 1;
+            int home = hash(idHigh[slot], idLow[slot]) & mask;
+
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                slotsById[free] = slotsById[next];
+                free = next;
+            }
+        }
+
+        slotsById[free] = 0;
+    }
+
+    private void grow() {
+        int capacity = order.length + (order.length >> 1);
+
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        z = Arrays.copyOf(z, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        lastModified = Arrays.copyOf(lastModified, capacity);
+        order = Arrays.copyOf(order, capacity);
+
+        if (capacity * 2 > slotsById.length) {
+            slotsById = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+
+            for (int slot = 0; slot < size; slot++) {
+                slotsById[freeEntry(idHigh[slot], idLow[slot])] = slot + 1;
+            }
+        }
+    }
+
+    private Widget widgetAt(int slot) {
+        return new Widget(WidgetIds.fromKey(idHigh[slot], idLow[slot]), x[slot], y[slot], z[slot],
+                width[slot], height[slot], fromMillis(lastModified[slot]));
+    }
+
+    private static int hash(long high, long low) {
+        long hash = (high ^ low) * 0x9e3779b97f4a7c15L;
+
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static long toMillis(LocalDateTime lastModified) {
+        return lastModified.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
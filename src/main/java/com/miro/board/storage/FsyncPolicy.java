@@ -0,0 +1,22 @@
+package com.miro.board.storage;
+
+/**
+ * When {@link WidgetsLog} forces appended records to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * After every mutation, before it is acknowledged.
+     */
+    PER_WRITE,
+
+    /**
+     * Once per batch of mutations, before any of them is acknowledged (group commit).
+     */
+    PER_BATCH,
+
+    /**
+     * On a timer; mutations are acknowledged once written to the OS, so a crash
+     * may lose up to one interval of writes.
+     */
+    INTERVAL
+}
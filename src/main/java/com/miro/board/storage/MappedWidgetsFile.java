@@ -0,0 +1,285 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Board state as a file of fixed-width records, read through a memory mapping.
+ * Records are sorted by z and followed by a table of record numbers sorted by id,
+ * so every read is a binary search over the mapping and nothing is loaded up front.
+ *
+ * <p>Layout: a header (magic, format, version, count), {@code count} records of
+ * {@value #RECORD_SIZE} bytes, then {@code count} ints indexing the records by id.
+ * A record holds the id zero-padded to {@value #ID_SIZE} bytes, x, y, z, width, height,
+ * and lastModified as epoch seconds and nanos in UTC.
+ */
+public final class MappedWidgetsFile implements WidgetsView {
+    private static final int MAGIC = 0x574d4150;
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int ID_SIZE = 36;
+
+    private static final int X_OFFSET = ID_SIZE;
+    private static final int Y_OFFSET = X_OFFSET + 4;
+    private static final int Z_OFFSET = Y_OFFSET + 4;
+    private static final int WIDTH_OFFSET = Z_OFFSET + 4;
+    private static final int HEIGHT_OFFSET = WIDTH_OFFSET + 4;
+    private static final int SECONDS_OFFSET = HEIGHT_OFFSET + 4;
+    private static final int NANOS_OFFSET = SECONDS_OFFSET + 8;
+    private static final int RECORD_SIZE = NANOS_OFFSET + 4;
+
+    private static final Comparator<byte[]> ID_ORDER = (first, second) -> {
+        for (int i = 0; i < ID_SIZE; i++) {
+            int cmp = Integer.compare(first[i] & 0xff, second[i] & 0xff);
+
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return 0;
+    };
+
+    private final ByteBuffer buffer;
+    private final long version;
+    private final int size;
+    private final int idIndexOffset;
+
+    private MappedWidgetsFile(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.version = buffer.getLong(8);
+        this.size = buffer.getInt(16);
+        this.idIndexOffset = HEADER_SIZE + size * RECORD_SIZE;
+    }
+
+    public static MappedWidgetsFile map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+                throw new IOException("Not a widgets snapshot: " + path);
+            }
+
+            MappedWidgetsFile file = new MappedWidgetsFile(buffer);
+
+            if (buffer.capacity() != (long) HEADER_SIZE + (long) file.size * (RECORD_SIZE + 4)) {
+                throw new IOException("Truncated widgets snapshot: " + path);
+            }
+
+            return file;
+        }
+    }
+
+    /**
+     * Writes the widgets and forces them to disk. The whole file has to stay mappable,
+     * which limits a board to about 28 million widgets. A widget whose id is longer than
+     * {@value #ID_SIZE} bytes fails the write with an {@link IOException}.
+     */
+    public static void write(Path path, WidgetsSnapshot widgets, long version) throws IOException {
+        int size = widgets.size();
+
+        if ((long) HEADER_SIZE + (long) size * (RECORD_SIZE + 4) > Integer.MAX_VALUE) {
+            throw new IOException("Board of " + size + " widgets is too large for a snapshot file");
+        }
+
+        byte[][] ids = new byte[size][];
+        Integer[] recordsById = new Integer[size];
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT);
+            output.writeLong(version);
+            output.writeInt(size);
+            output.write(new byte[HEADER_SIZE - 20]);
+
+            int record = 0;
+
+            for (Widget widget : widgets.getWidgets()) {
+                ids[record] = encodeId(widget.getId());
+                recordsById[record] = record;
+
+                if (ids[record] == null) {
+                    throw new IOException("Widget id is longer than " + ID_SIZE + " bytes: " + widget.getId());
+                }
+
+                output.write(ids[record]);
+                output.writeInt(widget.getX());
+                output.writeInt(widget.getY());
+                output.writeInt(widget.getZ());
+                output.writeInt(widget.getWidth());
+                output.writeInt(widget.getHeight());
+                output.writeLong(widget.getLastModified().toEpochSecond(ZoneOffset.UTC));
+                output.writeInt(widget.getLastModified().getNano());
+                record++;
+            }
+
+            Arrays.sort(recordsById, (first, second) -> ID_ORDER.compare(ids[first], ids[second]));
+
+            for (int recordById : recordsById) {
+                output.writeInt(recordById);
+            }
+
+            output.flush();
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Collection<Widget> getWidgets() {
+        return new AbstractList<Widget>() {
+            @Override
+            public Widget get(int index) {
+                return widgetAt(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public List<Widget> getWidgets(Area area) {
+        List<Widget> widgetsInArea = new ArrayList<>();
+
+        for (int record = 0; record < size; record++) {
+            int offset = HEADER_SIZE + record * RECORD_SIZE;
+            int x = buffer.getInt(offset + X_OFFSET), y = buffer.getInt(offset + Y_OFFSET);
+
+            if (x >= area.getX1() && y >= area.getY1()
+                    && (long) x + buffer.getInt(offset + WIDTH_OFFSET) <= area.getX2()
+                    && (long) y + buffer.getInt(offset + HEIGHT_OFFSET) <= area.getY2()) {
+                widgetsInArea.add(widgetAt(record));
+            }
+        }
+
+        return widgetsInArea;
+    }
+
+    @Override
+    public List<Widget> getWidgets(int afterZ, int limit) {
+        int low = 0, high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (zAt(middle) <= afterZ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        List<Widget> page = new ArrayList<>();
+
+        for (int record = low; record < size && page.size() < limit; record++) {
+            page.add(widgetAt(record));
+        }
+
+        return page;
+    }
+
+    @Override
+    public Widget getWidget(String id) {
+        byte[] encodedId = encodeId(id);
+
+        if (encodedId == null) {
+            return null;
+        }
+
+        byte[] storedId = new byte[ID_SIZE];
+        int low = 0, high = size - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int record = buffer.getInt(idIndexOffset + middle * 4);
+            readId(record, storedId);
+
+            int cmp = ID_ORDER.compare(storedId, encodedId);
+
+            if (cmp == 0) {
+                return widgetAt(record);
+            }
+
+            if (cmp < 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return null;
+    }
+
+    private int zAt(int record) {
+        return buffer.getInt(HEADER_SIZE + record * RECORD_SIZE + Z_OFFSET);
+    }
+
+    private void readId(int record, byte[] id) {
+        int offset = HEADER_SIZE + record * RECORD_SIZE;
+
+        for (int i = 0; i < ID_SIZE; i++) {
+            id[i] = buffer.get(offset + i);
+        }
+    }
+
+    private Widget widgetAt(int record) {
+        int offset = HEADER_SIZE + record * RECORD_SIZE;
+        byte[] id = new byte[ID_SIZE];
+        readId(record, id);
+
+        int idLength = 0;
+
+        while (idLength < ID_SIZE && id[idLength] != 0) {
+            idLength++;
+        }
+
+        LocalDateTime lastModified = LocalDateTime.ofEpochSecond(buffer.getLong(offset + SECONDS_OFFSET),
+                buffer.getInt(offset + NANOS_OFFSET), ZoneOffset.UTC);
+
+        return new Widget(new String(id, 0, idLength, StandardCharsets.UTF_8),
+                buffer.getInt(offset + X_OFFSET), buffer.getInt(offset + Y_OFFSET), buffer.getInt(offset + Z_OFFSET),
+                buffer.getInt(offset + WIDTH_OFFSET), buffer.getInt(offset + HEIGHT_OFFSET), lastModified);
+    }
+
+    /**
+     * The id zero-padded to {@value #ID_SIZE} bytes, or {@code null} when it does not fit a record.
+     */
+    private static byte[] encodeId(String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+
+        return (bytes.length > ID_SIZE) ? null : Arrays.copyOf(bytes, ID_SIZE);
+    }
+}
@@ -0,0 +1,388 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIds;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Board kept entirely in direct buffers, so a large board adds nothing for the garbage collector
+ * to trace. Same layout as {@link ColumnarWidgets}, but as off-heap memory: fixed-size records
+ * indexed by slot, slots sorted by z, and an open-addressing table from ids to slots.
+ *
+ * <p>Record layout: id as two longs (see {@link WidgetIds#toKey}), x, y, z, width, height, 4 bytes of padding and
+ * last modification time as epoch millis in UTC. Buffers grow by half when full, before a write
+ * touches them, and the old ones are freed once collected. Not thread-safe.
+ */
+public final class OffHeapWidgets implements WidgetsTable {
+    public static final int RECORD_SIZE = 48;
+
+    private static final int ID_LOW_OFFSET = 8;
+    private static final int X_OFFSET = 16;
+    private static final int Y_OFFSET = 20;
+    private static final int Z_OFFSET = 24;
+    private static final int WIDTH_OFFSET = 28;
+    private static final int HEIGHT_OFFSET = 32;
+    private static final int LAST_MODIFIED_OFFSET = 40;
+
+    private ByteBuffer records;
+    private ByteBuffer order;
+    private ByteBuffer slotsById;
+    private int capacity;
+    private int size;
+
+    public OffHeapWidgets(int initialCapacity) {
+        capacity = Math.max(initialCapacity, 16);
+        records = allocate(capacity * RECORD_SIZE);
+        order = allocate(capacity * 4);
+        slotsById = allocate(tableSize(capacity) * 4);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Off-heap memory held by the buffers, used or not.
+     */
+    public long allocatedBytes() {
+        return (long) records.capacity() + order.capacity() + slotsById.capacity();
+    }
+
+    /**
+     * Off-heap memory taken by the widgets on the board, leaving out the spare capacity.
+     */
+    public long usedBytes() {
+        return (long) size * (RECORD_SIZE + 4) + slotsById.capacity();
+    }
+
+    /**
+     * Widgets in z order, created as the list is read.
+     */
+    @Override
+    public List<Widget> getWidgets() {
+        return new AbstractList<Widget>() {
+            @Override
+            public Widget get(int index) {
+                return widgetAt(slotAt(index));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public List<Widget> getWidgets(Area area) {
+        List<Widget> widgetsInArea = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            int offset = slotAt(i) * RECORD_SIZE;
+            int x = records.getInt(offset + X_OFFSET), y = records.getInt(offset + Y_OFFSET);
+
+            if (x >= area.getX1() && y >= area.getY1()
+                    && (long) x + records.getInt(offset + WIDTH_OFFSET) <= area.getX2()
+                    && (long) y + records.getInt(offset + HEIGHT_OFFSET) <= area.getY2()) {
+                widgetsInArea.add(widgetAt(slotAt(i)));
+            }
+        }
+
+        return widgetsInArea;
+    }
+
+    @Override
+    public List<Widget> getWidgets(int afterZ, int limit) {
+        List<Widget> page = new ArrayList<>();
+
+        for (int i = rankAfter(afterZ); i < size && page.size() < limit; i++) {
+            page.add(widgetAt(slotAt(i)));
+        }
+
+        return page;
+    }
+
+    @Override
+    public Widget getWidget(String id) {
+        int slot = slotOf(id);
+
+        return (slot < 0) ? null : widgetAt(slot);
+    }
+
+    @Override
+    public boolean containsWidget(String id) {
+        return slotOf(id) >= 0;
+    }
+
+    /**
+     * The z that puts a widget on top of every other widget except {@code excludedId}.
+     */
+    @Override
+    public int nextZ(String excludedId) {
+        int top = size - 1;
+
+        if (top >= 0 && slotAt(top) == slotOf(excludedId)) {
+            top--;
+        }
+
+        return (top < 0) ? 1 : zOf(slotAt(top)) + 1;
+    }
+
+    /**
+     * Grows the buffers to hold {@code widgets} widgets, so the writes that add them cannot fail halfway.
+     *
+     * @throws IllegalStateException if no buffer can be that large, leaving the board as it was
+     */
+    public void reserve(int widgets) {
+        if (widgets <= capacity) {
+            return;
+        }
+
+        long newCapacity = Math.max(capacity + (capacity >> 1), (long) widgets);
+
+        if (newCapacity * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Board cannot hold " + widgets + " widgets");
+        }
+
+        grow((int) newCapacity);
+    }
+
+    /**
+     * Inserts or replaces the widget, pushing up the run of widgets above it
+     * as {@link WidgetsSnapshot#withWidget} does.
+     */
+    @Override
+    public void put(Widget widget) {
+        UUID id = WidgetIds.toKey(widget.getId());
+        long modifiedMillis = widget.getLastModified().toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        if (slotsById.getInt(entryOf(id.getMostSignificantBits(), id.getLeastSignificantBits()) * 4) == 0) {
+            reserve(size + 1);
+        }
+
+        removeWidget(id.getMostSignificantBits(), id.getLeastSignificantBits());
+
+        int newZ = widget.getZ();
+        int index = rankAfter((long) newZ - 1);
+
+        for (int i = index; i < size && zOf(slotAt(i)) == newZ + (i - index); i++) {
+            int offset = slotAt(i) * RECORD_SIZE;
+            records.putInt(offset + Z_OFFSET, records.getInt(offset + Z_OFFSET) + 1);
+            records.putLong(offset + LAST_MODIFIED_OFFSET, modifiedMillis);
+        }
+
+        int slot = size;
+        int offset = slot * RECORD_SIZE;
+        records.putLong(offset, id.getMostSignificantBits());
+        records.putLong(offset + ID_LOW_OFFSET, id.getLeastSignificantBits());
+        records.putInt(offset + X_OFFSET, widget.getX());
+        records.putInt(offset + Y_OFFSET, widget.getY());
+        records.putInt(offset + Z_OFFSET, newZ);
+        records.putInt(offset + WIDTH_OFFSET, widget.getWidth());
+        records.putInt(offset + HEIGHT_OFFSET, widget.getHeight());
+        records.putLong(offset + LAST_MODIFIED_OFFSET, modifiedMillis);
+
+        for (int i = size; i > index; i--) {
+            order.putInt(i * 4, slotAt(i - 1));
+        }
+
+        order.putInt(index * 4, slot);
+        size++;
+
+        slotsById.putInt(freeEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()) * 4, slot + 1);
+    }
+
+    @Override
+    public boolean remove(String id) {
+        UUID uuid = WidgetIds.toKey(id);
+
+        return uuid != null && removeWidget(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    private boolean removeWidget(long high, long low) {
+        int entry = entryOf(high, low);
+        int slot = slotsById.getInt(entry * 4) - 1;
+
+        if (slot < 0) {
+            return false;
+        }
+
+        int index = rankAfter((long) zOf(slot) - 1);
+
+        for (int i = index; i < size - 1; i++) {
+            order.putInt(i * 4, slotAt(i + 1));
+        }
+
+        removeEntry(entry);
+        size--;
+
+        if (slot != size) {
+            moveSlot(size, slot);
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the last record into a freed slot, so records stay packed.
+     */
+    private void moveSlot(int from, int to) {
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            records.putLong(to * RECORD_SIZE + i, records.getLong(from * RECORD_SIZE + i));
+        }
+
+        order.putInt(rankAfter((long) zOf(to) - 1) * 4, to);
+        slotsById.putInt(entryOf(idHighOf(to), idLowOf(to)) * 4, to + 1);
+    }
+
+    private int rankAfter(long afterZ) {
+        int low = 0, high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (zOf(slotAt(middle)) <= afterZ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private int slotOf(String id) {
+        UUID uuid = (id == null) ? null : WidgetIds.toKey(id);
+
+        if (uuid == null) {
+            return -1;
+        }
+
+        return slotsById.getInt(entryOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) * 4) - 1;
+    }
+
+    private int entryOf(long high, long low) {
+        int mask = tableMask();
+
+        for (int entry = hash(high, low) & mask; ; entry = (entry + 1) & mask) {
+            int slot = slotsById.getInt(entry * 4) - 1;
+
+            if (slot < 0 || (idHighOf(slot) == high && idLowOf(slot) == low)) {
+                return entry;
+            }
+        }
+    }
+
+    private int freeEntry(long high, long low) {
+        int mask = tableMask();
+        int entry = hash(high, low) & mask;
+
+        while (slotsById.getInt(entry * 4) != 0) {
+            entry = (entry + 1) & mask;
+        }
+
+        return entry;
+    }
+
+    private void removeEntry(int entry) {
+        int mask = tableMask();
+        int free = entry;
+
+        for (int next = (free + 1) & mask; slotsById.getInt(next * 4) != 0; next = (next + 1) & mask) {
+            int slot = slotsById.getInt(next * 4) - 1;
+            int home = hash(idHighOf(slot), idLowOf(slot)) & mask;
+
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                slotsById.putInt(free * 4, slot + 1);
+                free = next;
+            }
+        }
+
+        slotsById.putInt(free * 4, 0);
+    }
+
+    private void grow(int newCapacity) {
+        records = copy(records, newCapacity * RECORD_SIZE);
+        order = copy(order, newCapacity * 4);
+        capacity = newCapacity;
+
+        if (tableSize(capacity) * 4 > slotsById.capacity()) {
+            slotsById = allocate(tableSize(capacity) * 4);
+
+            for (int slot = 0; slot < size; slot++) {
+                slotsById.putInt(freeEntry(idHighOf(slot), idLowOf(slot)) * 4, slot + 1);
+            }
+        }
+    }
+
+    private int slotAt(int index) {
+        return order.getInt(index * 4);
+    }
+
+    private int zOf(int slot) {
+        return records.getInt(slot * RECORD_SIZE + Z_OFFSET);
+    }
+
+    private long idHighOf(int slot) {
+        return records.getLong(slot * RECORD_SIZE);
+    }
+
+    private long idLowOf(int slot) {
+        return records.getLong(slot * RECORD_SIZE + ID_LOW_OFFSET);
+    }
+
+    private int tableMask() {
+        return slotsById.capacity() / 4 - 1;
+    }
+
+    private Widget widgetAt(int slot) {
+        int offset = slot * RECORD_SIZE;
+        LocalDateTime lastModified = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(records.getLong(offset + LAST_MODIFIED_OFFSET)), ZoneOffset.UTC);
+
+        return new Widget(WidgetIds.fromKey(idHighOf(slot), idLowOf(slot)),
+                records.getInt(offset + X_OFFSET), records.getInt(offset + Y_OFFSET), records.getInt(offset + Z_OFFSET),
+                records.getInt(offset + WIDTH_OFFSET), records.getInt(offset + HEIGHT_OFFSET), lastModified);
+    }
+
+    /**
+     * Id table entries for {@code capacity} widgets, keeping the table at most half full.
+     */
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    private static int hash(long high, long low) {
+        long hash = (high ^ low) * 0x9e3779b97f4a7c15L;
+
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer, int bytes) {
+        ByteBuffer newBuffer = allocate(bytes);
+        ByteBuffer source = buffer.duplicate();
+        source.clear();
+        newBuffer.put(source);
+
+        return newBuffer;
+    }
+}
@@ -0,0 +1,292 @@
+package com.miro.board.storage;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sorted map backed by an AVL tree with path copying.
+ * Every update returns a new map sharing all untouched nodes with the previous one,
+ * so a mutation allocates O(log n) nodes and old versions stay valid for readers.
+ */
+public final class PersistentSortedMap<K, V> {
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return new PersistentSortedMap<>(Comparator.naturalOrder(), null);
+    }
+
+    public static <K, V> PersistentSortedMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentSortedMap<>(comparator, null);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = root;
+
+        while (node != null) {
+            int cmp = comparator.compare(key, node.key);
+
+            if (cmp == 0) {
+                return node.value;
+            }
+
+            node = (cmp < 0) ? node.left : node.right;
+        }
+
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    public PersistentSortedMap<K, V> put(K key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+
+        return new PersistentSortedMap<>(comparator, put(root, key, value));
+    }
+
+    public PersistentSortedMap<K, V> remove(K key) {
+        Node<K, V> newRoot = remove(root, key);
+
+        return (newRoot == root) ? this : new PersistentSortedMap<>(comparator, newRoot);
+    }
+
+    public V lastValue() {
+        Node<K, V> node = root;
+
+        if (node == null) {
+            return null;
+        }
+
+        while (node.right != null) {
+            node = node.right;
+        }
+
+        return node.value;
+    }
+
+    /**
+     * Value of the greatest key strictly less than {@code key}, or {@code null} if there is none.
+     */
+    public V lowerValue(K key) {
+        Node<K, V> node = root;
+        V lower = null;
+
+        while (node != null) {
+            if (comparator.compare(key, node.key) > 0) {
+                lower = node.value;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValuesIterator<>(root, null, null, comparator);
+            }
+
+            @Override
+            public int size() {
+                return PersistentSortedMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Ascending iterator over the values whose keys are greater than or equal to {@code fromKey}.
+     */
+    public Iterator<V> valuesFrom(K fromKey) {
+        return new ValuesIterator<>(root, fromKey, null, comparator);
+    }
+
+    /**
+     * Ascending iterator over the values whose keys are within {@code [fromKey, toKey]}.
+     */
+    public Iterator<V> valuesBetween(K fromKey, K toKey) {
+        return new ValuesIterator<>(root, fromKey, toKey, comparator);
+    }
+
+    private Node<K, V> put(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null);
+        }
+
+        int cmp = comparator.compare(key, node.key);
+
+        if (cmp == 0) {
+            return (node.value == value) ? node : new Node<>(key, value, node.left, node.right);
+        }
+
+        if (cmp < 0) {
+            return balance(node.key, node.value, put(node.left, key, value), node.right);
+        }
+
+        return balance(node.key, node.value, node.left, put(node.right, key, value));
+    }
+
+    private Node<K, V> remove(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = comparator.compare(key, node.key);
+
+        if (cmp < 0) {
+            Node<K, V> left = remove(node.left, key);
+            return (left == node.left) ? node : balance(node.key, node.value, left, node.right);
+        }
+
+        if (cmp > 0) {
+            Node<K, V> right = remove(node.right, key);
+            return (right == node.right) ? node : balance(node.key, node.value, node.left, right);
+        }
+
+        if (node.left == null) {
+            return node.right;
+        }
+
+        if (node.right == null) {
+            return node.left;
+        }
+
+        Node<K, V> successor = node.right;
+
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+
+        return balance(successor.key, successor.value, node.left, removeMin(node.right));
+    }
+
+    private Node<K, V> removeMin(Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+
+        return balance(node.key, node.value, removeMin(node.left), node.right);
+    }
+
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int leftHeight = height(left), rightHeight = height(right);
+
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left,
+                        new Node<>(key, value, left.right, right));
+            }
+
+            return new Node<>(left.right.key, left.right.value,
+                    new Node<>(left.key, left.value, left.left, left.right.left),
+                    new Node<>(key, value, left.right.right, right));
+        }
+
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value,
+                        new Node<>(key, value, left, right.left), right.right);
+            }
+
+            return new Node<>(right.left.key, right.left.value,
+                    new Node<>(key, value, left, right.left.left),
+                    new Node<>(right.key, right.value, right.left.right, right.right));
+        }
+
+        return new Node<>(key, value, left, right);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    private static int size(Node<?, ?> node) {
+        return (node == null) ? 0 : node.size;
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final Node<K, V> left;
+        private final Node<K, V> right;
+        private final int height;
+        private final int size;
+
+        private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+    private static final class ValuesIterator<K, V> implements Iterator<V> {
+        private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+        private final K toKey;
+        private final Comparator<? super K> comparator;
+
+        private ValuesIterator(Node<K, V> root, K fromKey, K toKey, Comparator<? super K> comparator) {
+            this.toKey = toKey;
+            this.comparator = comparator;
+
+            Node<K, V> node = root;
+
+            while (node != null) {
+                if (fromKey == null || comparator.compare(fromKey, node.key) <= 0) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty()
+                    && (toKey == null || comparator.compare(stack.peek().key, toKey) <= 0);
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Node<K, V> node = stack.pop();
+
+            for (Node<K, V> child = node.right; child != null; child = child.left) {
+                stack.push(child);
+            }
+
+            return node.value;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Persistent uniform grid over widget origins (bottom-left corners).
+ * A widget lying fully inside an area has its origin inside that area,
+ * so a query only visits the tiles overlapping the area and filters
+ * the widgets registered there.
+ */
+public final class SpatialIndex {
+    public static final SpatialIndex EMPTY = new SpatialIndex(PersistentSortedMap.empty());
+
+    private static final int TILE_SIZE = 256;
+
+    private final PersistentSortedMap<Long, Tile> tiles;
+
+    private SpatialIndex(PersistentSortedMap<Long, Tile> tiles) {
+        this.tiles = tiles;
+    }
+
+    public SpatialIndex with(Widget widget) {
+        long key = tileKey(tileOf(widget.getX()), tileOf(widget.getY()));
+        Tile tile = tiles.get(key);
+        PersistentSortedMap<String, String> ids = (tile == null) ? PersistentSortedMap.empty() : tile.ids;
+
+        return new SpatialIndex(tiles.put(key, new Tile(key, ids.put(widget.getId(), widget.getId()))));
+    }
+
+    public SpatialIndex without(Widget widget) {
+        long key = tileKey(tileOf(widget.getX()), tileOf(widget.getY()));
+        Tile tile = tiles.get(key);
+
+        if (tile == null) {
+            return this;
+        }
+
+        PersistentSortedMap<String, String> ids = tile.ids.remove(widget.getId());
+
+        return new SpatialIndex(ids.isEmpty() ? tiles.remove(key) : tiles.put(key, new Tile(key, ids)));
+    }
+
+    /**
+     * Ids of the widgets whose origin falls into a tile overlapping the area.
+     * Candidates still have to be checked with {@link Area#contains(Widget)}.
+     */
+    public List<String> candidates(Area area) {
+        List<String> candidateIds = new ArrayList<>();
+
+        if (area.getX1() > area.getX2() || area.getY1() > area.getY2()) {
+            return candidateIds;
+        }
+
+        int fromTileX = tileOf(area.getX1()), toTileX = tileOf(area.getX2());
+        int fromTileY = tileOf(area.getY1()), toTileY = tileOf(area.getY2());
+
+        if ((long) toTileY - fromTileY + 1 > tiles.size()) {
+            for (Tile tile : tiles.values()) {
+                int tileY = (int) (tile.key >> 32);
+                int tileX = (int) tile.key ^ Integer.MIN_VALUE;
+
+                if (tileY >= fromTileY && tileY <= toTileY && tileX >= fromTileX && tileX <= toTileX) {
+                    candidateIds.addAll(tile.ids.values());
+                }
+            }
+
+            return candidateIds;
+        }
+
+        for (long tileY = fromTileY; tileY <= toTileY; tileY++) {
+            Iterator<Tile> tileIterator = tiles.valuesBetween(
+                    tileKey(fromTileX, (int) tileY), tileKey(toTileX, (int) tileY));
+
+            while (tileIterator.hasNext()) {
+                candidateIds.addAll(tileIterator.next().ids.values());
+            }
+        }
+
+        return candidateIds;
+    }
+
+    private static int tileOf(int coordinate) {
+        return Math.floorDiv(coordinate, TILE_SIZE);
+    }
+
+    private static long tileKey(int tileX, int tileY) {
+        return ((long) tileY << 32) | ((tileX ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    private static final class Tile {
+        private final long key;
+        private final PersistentSortedMap<String, String> ids;
+
+        private Tile(long key, PersistentSortedMap<String, String> ids) {
+            this.key = key;
+            this.ids = ids;
+        }
+    }
+}
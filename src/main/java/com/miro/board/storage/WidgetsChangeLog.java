@@ -0,0 +1,174 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetsChanges;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The last {@code capacity} writes to a board of snapshots, as the version each write produced,
+ * the widget it wrote and the z range it pushed up, so the changes since any recent version can
+ * be read off the current snapshot instead of diffing two snapshots.
+ *
+ * <p>Writers record before publishing and may record attempts that are never published; those
+ * only make a few unchanged widgets show up as shifted. Recording takes no lock. Overwriting a
+ * record marks its version as truncated, and changes since an earlier version need a resync.
+ */
+public final class WidgetsChangeLog {
+    private final AtomicReferenceArray<Change> changes;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong truncatedVersion = new AtomicLong();
+
+    public WidgetsChangeLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Change log needs room for at least one change");
+        }
+
+        this.changes = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Records {@code widget} written onto {@code before}, giving {@code after}.
+     */
+    public void recordPut(WidgetsSnapshot before, WidgetsSnapshot after, Widget widget, boolean created) {
+        int shiftedWidgets = (int) (after.getShiftedWidgets() - before.getShiftedWidgets());
+
+        record(new Change(after.getVersion(), widget.getId(), created ? Type.CREATED : Type.UPDATED,
+                widget.getZ(), shiftedWidgets));
+    }
+
+    /**
+     * Records widget {@code id} deleted from {@code before}, giving {@code after}.
+     */
+    public void recordDelete(WidgetsSnapshot before, WidgetsSnapshot after, String id) {
+        if (after != before) {
+            record(new Change(after.getVersion(), id, Type.DELETED, 0, 0));
+        }
+    }
+
+    /**
+     * Changes from version {@code since} to {@code current}, or a resync when {@code since} is
+     * not a version of this board or its changes are no longer all recorded.
+     */
+    public WidgetsChanges changesSince(long since, WidgetsSnapshot current) {
+        long version = current.getVersion();
+
+        if (since == version) {
+            return WidgetsChanges.none(version);
+        }
+
+        if (since < 0 || since > version) {
+            return WidgetsChanges.resync(version, current.getWidgets());
+        }
+
+        List<Change> recorded = new ArrayList<>();
+
+        for (int i = 0; i < changes.length(); i++) {
+            Change change = changes.get(i);
+
+            if (change != null && change.version > since && change.version <= version) {
+                recorded.add(change);
+            }
+        }
+
+        if (truncatedVersion.get() > since) {
+            return WidgetsChanges.resync(version, current.getWidgets());
+        }
+
+        Set<String> createdIds = new HashSet<>(), writtenIds = new HashSet<>();
+        Set<String> deletedIds = new LinkedHashSet<>();
+        Map<String, Widget> changedWidgets = new LinkedHashMap<>();
+
+        for (Change change : recorded) {
+            if (change.type == Type.DELETED) {
+                deletedIds.add(change.id);
+                continue;
+            }
+
+            (change.type == Type.CREATED ? createdIds : writtenIds).add(change.id);
+
+            Widget widget = current.getWidget(change.id);
+
+            if (widget != null) {
+                changedWidgets.put(widget.getId(), widget);
+            }
+
+            if (change.shiftedWidgets > 0) {
+                for (Widget shifted : current.getWidgets(change.z, change.shiftedWidgets)) {
+                    if (shifted.getZ() <= change.z + change.shiftedWidgets) {
+                        changedWidgets.put(shifted.getId(), shifted);
+                    }
+                }
+            }
+        }
+
+        List<Widget> changed = new ArrayList<>(changedWidgets.values());
+        changed.sort(Comparator.comparing(Widget::getZ));
+
+        List<Widget> created = new ArrayList<>(), updated = new ArrayList<>(), shifted = new ArrayList<>();
+
+        for (Widget widget : changed) {
+            if (createdIds.contains(widget.getId())) {
+                created.add(widget);
+            } else if (writtenIds.contains(widget.getId())) {
+                updated.add(widget);
+            } else {
+                shifted.add(widget);
+            }
+        }
+
+        List<String> deleted = new ArrayList<>();
+
+        for (String id : deletedIds) {
+            if (!createdIds.contains(id) && !current.containsWidget(id)) {
+                deleted.add(id);
+            }
+        }
+
+        return new WidgetsChanges(version, false, created, updated, shifted, deleted);
+    }
+
+    private void record(Change change) {
+        int slot = (int) (nextSequence.getAndIncrement() % changes.length());
+        Change overwritten;
+
+        do {
+            overwritten = changes.get(slot);
+
+            if (overwritten != null) {
+                truncatedVersion.accumulateAndGet(overwritten.version, Math::max);
+            }
+        } while (!changes.compareAndSet(slot, overwritten, change));
+    }
+
+    private enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private static final class Change {
+        final long version;
+        final String id;
+        final Type type;
+        final int z;
+        final int shiftedWidgets;
+
+        Change(long version, String id, Type type, int z, int shiftedWidgets) {
+            this.version = version;
+            this.id = id;
+            this.type = type;
+            this.z = z;
+            this.shiftedWidgets = shiftedWidgets;
+        }
+    }
+}
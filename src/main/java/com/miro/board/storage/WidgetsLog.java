@@ -0,0 +1,450 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Widget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of one board. Every put and delete is appended as a checksummed record
+ * carrying the version it produces; shifted widgets need no records of their own, since
+ * replaying a put shifts exactly the same run again. Once {@code snapshotThreshold} records
+ * have accumulated, the log rolls over to a new segment and writes the current snapshot in
+ * the background; segments covered by the snapshot are deleted afterwards.
+ *
+ * <p>Recovery loads the snapshot and replays the newer records. A torn record at the end of
+ * the last segment is what a crash mid-append leaves behind, so it is cut off.
+ *
+ * <p>Appends are not thread-safe: they all come from the single writer of the board.
+ */
+public final class WidgetsLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(WidgetsLog.class);
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int MAX_RECORD_LENGTH = 1 << 16;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final int snapshotThreshold;
+    private final ScheduledExecutorService background;
+
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
+    private final CRC32 recordChecksum = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+
+    private volatile FileChannel segment;
+    private long version;
+    private long recordsSinceSnapshot;
+    private Future<?> snapshotInProgress;
+    private WidgetsSnapshot lastWidgets;
+    private UncheckedIOException failure;
+
+    private WidgetsLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, int snapshotThreshold) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.snapshotThreshold = snapshotThreshold;
+        this.background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "widgets-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            background.scheduleWithFixedDelay(this::forceSegment,
+                    fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static WidgetsLog open(Path directory, FsyncPolicy fsyncPolicy,
+                                  long fsyncIntervalMillis, int snapshotThreshold) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return new WidgetsLog(directory, fsyncPolicy, fsyncIntervalMillis, snapshotThreshold);
+    }
+
+    /**
+     * The snapshot file mapped for reading, or {@code null} when there is none or the log
+     * holds records past it. Lets the board serve reads while {@link #recover()} rebuilds it.
+     */
+    public MappedWidgetsFile mapSnapshot() {
+        try {
+            Path path = directory.resolve(SNAPSHOT_FILE);
+
+            if (!Files.exists(path)) {
+                return null;
+            }
+
+            for (Path segmentPath : segments()) {
+                if (Files.size(segmentPath) > 0) {
+                    return null;
+                }
+            }
+
+            return MappedWidgetsFile.map(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Rebuilds the board from the snapshot and the log tail, then opens a new segment for appends.
+     * Must be called once, before anything is appended.
+     */
+    public WidgetsSnapshot recover() {
+        try {
+            WidgetsSnapshot widgets = readSnapshot();
+            long snapshotVersion = version;
+            List<Path> segments = segments();
+
+            for (int i = 0; i < segments.size(); i++) {
+                widgets = replay(segments.get(i), widgets, i == segments.size() - 1);
+            }
+
+            segment = openSegment(version + 1);
+            recordsSinceSnapshot = version - snapshotVersion;
+            lastWidgets = widgets;
+
+            return widgets;
+        } catch (IOException ex) {
+            failure = new UncheckedIOException(ex);
+            throw failure;
+        }
+    }
+
+    public void put(Widget widget) {
+        append(PUT, output -> writeWidget(output, widget));
+    }
+
+    public void delete(String id) {
+        append(DELETE, output -> output.writeUTF(id));
+    }
+
+    /**
+     * Called after the records of one mutation have been appended.
+     */
+    public void endMutation() {
+        if (fsyncPolicy == FsyncPolicy.PER_WRITE) {
+            flush(true);
+        }
+    }
+
+    /**
+     * Called after a batch of mutations, before any of them is acknowledged.
+     * {@code widgets} is the state the batch produced.
+     */
+    public void endBatch(WidgetsSnapshot widgets) {
+        flush(fsyncPolicy == FsyncPolicy.PER_BATCH);
+        lastWidgets = widgets;
+
+        if (recordsSinceSnapshot >= snapshotThreshold
+                && (snapshotInProgress == null || snapshotInProgress.isDone())) {
+            startSnapshot(widgets);
+        }
+    }
+
+    /**
+     * Flushes the log and, if it holds records past the last snapshot, writes a final snapshot,
+     * so the next start can serve reads from the mapped snapshot right away.
+     */
+    @Override
+    public void close() {
+        try {
+            if (failure == null) {
+                flush(true);
+            }
+        } finally {
+            background.shutdown();
+
+            try {
+                background.awaitTermination(1, TimeUnit.MINUTES);
+
+                if (segment != null) {
+                    segment.close();
+                }
+
+                if (failure == null && recordsSinceSnapshot > 0) {
+                    writeSnapshot(lastWidgets, version);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | RuntimeException ex) {
+                logger.warn("Failed to close widgets log in {}", directory, ex);
+            }
+        }
+    }
+
+    private void append(byte type, RecordWriter writer) {
+        checkNotFailed();
+
+        try {
+            record.reset();
+            recordOutput.writeByte(type);
+            recordOutput.writeLong(version + 1);
+            writer.write(recordOutput);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        byte[] body = record.toByteArray();
+        recordChecksum.reset();
+        recordChecksum.update(body, 0, body.length);
+
+        if (pending.remaining() < body.length + 8) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + body.length + 8));
+            pending.flip();
+            pending = grown.put(pending);
+        }
+
+        pending.putInt(body.length);
+        pending.putInt((int) recordChecksum.getValue());
+        pending.put(body);
+
+        version++;
+        recordsSinceSnapshot++;
+    }
+
+    private void flush(boolean force) {
+        checkNotFailed();
+
+        if (pending.position() == 0) {
+            return;
+        }
+
+        try {
+            pending.flip();
+
+            while (pending.hasRemaining()) {
+                segment.write(pending);
+            }
+
+            pending.clear();
+
+            if (force) {
+                segment.force(false);
+            }
+        } catch (IOException ex) {
+            failure = new UncheckedIOException(ex);
+            throw failure;
+        }
+    }
+
+    private void forceSegment() {
+        try {
+            segment.force(false);
+        } catch (IOException ex) {
+            // The segment was rolled over and closed, which forced it already
+        }
+    }
+
+    private void checkNotFailed() {
+        if (failure != null) {
+            throw new IllegalStateException("Widgets log in " + directory + " has failed", failure);
+        }
+    }
+
+    private void startSnapshot(WidgetsSnapshot widgets) {
+        long snapshotVersion = version;
+        FileChannel previousSegment = segment;
+
+        try {
+            segment = openSegment(snapshotVersion + 1);
+            previousSegment.force(false);
+            previousSegment.close();
+        } catch (IOException ex) {
+            failure = new UncheckedIOException(ex);
+            throw failure;
+        }
+
+        recordsSinceSnapshot = 0;
+        snapshotInProgress = background.submit(() -> {
+            try {
+                writeSnapshot(widgets, snapshotVersion);
+            } catch (IOException | RuntimeException ex) {
+                logger.warn("Failed to write widgets snapshot in {}, keeping the log", directory, ex);
+            }
+        });
+    }
+
+    private WidgetsSnapshot readSnapshot() throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+
+        if (!Files.exists(path)) {
+            return WidgetsSnapshot.EMPTY;
+        }
+
+        MappedWidgetsFile file = MappedWidgetsFile.map(path);
+        version = file.getVersion();
+
+        return WidgetsSnapshot.of(new ArrayList<>(file.getWidgets()), version);
+    }
+
+    /**
+     * Replaces the snapshot file and deletes the segments it covers. On failure the previous
+     * snapshot and every segment stay as they were, so recovery still replays the whole log.
+     */
+    private void writeSnapshot(WidgetsSnapshot widgets, long snapshotVersion) throws IOException {
+        Path temporaryPath = directory.resolve(SNAPSHOT_FILE + ".tmp");
+
+        try {
+            MappedWidgetsFile.write(temporaryPath, widgets, snapshotVersion);
+            Files.move(temporaryPath, directory.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temporaryPath);
+            throw ex;
+        }
+
+        for (Path path : segments()) {
+            if (segmentVersion(path) <= snapshotVersion) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private WidgetsSnapshot replay(Path path, WidgetsSnapshot widgets, boolean lastSegment) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            CRC32 checksum = new CRC32();
+            long validLength = 0;
+
+            while (true) {
+                byte[] body;
+
+                try {
+                    int length = input.readInt();
+                    int expectedChecksum = input.readInt();
+
+                    if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                        break;
+                    }
+
+                    body = new byte[length];
+                    input.readFully(body);
+
+                    checksum.reset();
+                    checksum.update(body, 0, length);
+
+                    if ((int) checksum.getValue() != expectedChecksum) {
+                        break;
+                    }
+                } catch (EOFException ex) {
+                    break;
+                }
+
+                widgets = applyRecord(new DataInputStream(new ByteArrayInputStream(body)), widgets, path);
+                validLength += 8 + body.length;
+            }
+
+            if (validLength < channel.size()) {
+                if (!lastSegment) {
+                    throw new IOException("Corrupt widgets log segment: " + path);
+                }
+
+                channel.truncate(validLength);
+            }
+
+            return widgets;
+        }
+    }
+
+    private WidgetsSnapshot applyRecord(DataInput input, WidgetsSnapshot widgets, Path path) throws IOException {
+        byte type = input.readByte();
+        long recordVersion = input.readLong();
+
+        if (recordVersion <= version) {
+            return widgets;
+        }
+
+        if (recordVersion != version + 1) {
+            throw new IOException("Widgets log " + path + " skips from version " + version + " to " + recordVersion);
+        }
+
+        version = recordVersion;
+
+        return (type == PUT) ? widgets.withWidget(readWidget(input)) : widgets.withoutWidget(input.readUTF());
+    }
+
+    private FileChannel openSegment(long startVersion) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, startVersion, SEGMENT_SUFFIX));
+
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted((first, second) -> Long.compare(segmentVersion(first), segmentVersion(second)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long segmentVersion(Path path) {
+        String name = path.getFileName().toString();
+
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static void writeWidget(DataOutput output, Widget widget) throws IOException {
+        output.writeUTF(widget.getId());
+        output.writeInt(widget.getX());
+        output.writeInt(widget.getY());
+        output.writeInt(widget.getZ());
+        output.writeInt(widget.getWidth());
+        output.writeInt(widget.getHeight());
+        output.writeLong(widget.getLastModified().toEpochSecond(ZoneOffset.UTC));
+        output.writeInt(widget.getLastModified().getNano());
+    }
+
+    private static Widget readWidget(DataInput input) throws IOException {
+        String id = input.readUTF();
+        int x = input.readInt(), y = input.readInt(), z = input.readInt();
+        int width = input.readInt(), height = input.readInt();
+        LocalDateTime lastModified = LocalDateTime.ofEpochSecond(input.readLong(), input.readInt(), ZoneOffset.UTC);
+
+        return new Widget(id, x, y, z, width, height, lastModified);
+    }
+
+    private interface RecordWriter {
+        void write(DataOutput output) throws IOException;
+    }
+}
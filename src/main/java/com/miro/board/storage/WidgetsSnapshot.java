@@ -0,0 +1,349 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Immutable state of a board: widgets ordered by z plus indexes by id and by position.
+ * All indexes are persistent, so deriving a new snapshot shares
+ * almost everything with the current one. Every derived snapshot is one version
+ * ahead of the one it was derived from.
+ */
+public final class WidgetsSnapshot implements WidgetsView {
+    public static final WidgetsSnapshot EMPTY = new WidgetsSnapshot(
+            ZOrderTree.EMPTY, PersistentSortedMap.empty(), SpatialIndex.EMPTY, 0, 0, 0);
+
+    private static final long ORDER_KEY_GAP = 1L << 24;
+
+    private final ZOrderTree widgetsByZ;
+    private final PersistentSortedMap<String, Long> orderKeysById;
+    private final SpatialIndex widgetsByPosition;
+    private final long version;
+    private final long shiftedWidgets;
+    private final long renumberedWidgets;
+
+    private WidgetsSnapshot(ZOrderTree widgetsByZ,
+                            PersistentSortedMap<String, Long> orderKeysById,
+                            SpatialIndex widgetsByPosition,
+                            long version,
+                            long shiftedWidgets,
+                            long renumberedWidgets) {
+        this.widgetsByZ = widgetsByZ;
+        this.orderKeysById = orderKeysById;
+        this.widgetsByPosition = widgetsByPosition;
+        this.version = version;
+        this.shiftedWidgets = shiftedWidgets;
+        this.renumberedWidgets = renumberedWidgets;
+    }
+
+    /**
+     * Snapshot of widgets given in increasing z order, built without any shifting.
+     */
+    public static WidgetsSnapshot of(List<Widget> widgets) {
+        return of(widgets, 0);
+    }
+
+    /**
+     * Same as {@link #of(List)}, for a board that already went through {@code version} changes.
+     */
+    public static WidgetsSnapshot of(List<Widget> widgets, long version) {
+        SpatialIndex widgetsByPosition = SpatialIndex.EMPTY;
+
+        for (Widget widget : widgets) {
+            widgetsByPosition = widgetsByPosition.with(widget);
+        }
+
+        return build(widgets, widgetsByPosition, version);
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Widgets pushed up by other widgets in all changes leading to this snapshot.
+     */
+    public long getShiftedWidgets() {
+        return shiftedWidgets;
+    }
+
+    /**
+     * Widgets whose order keys were spread again in all changes leading to this snapshot.
+     */
+    public long getRenumberedWidgets() {
+        return renumberedWidgets;
+    }
+
+    @Override
+    public Collection<Widget> getWidgets() {
+        return new AbstractCollection<Widget>() {
+            @Override
+            public Iterator<Widget> iterator() {
+                return widgetsByZ.iterator(0);
+            }
+
+            @Override
+            public int size() {
+                return widgetsByZ.size();
+            }
+        };
+    }
+
+    @Override
+    public List<Widget> getWidgets(Area area) {
+        List<Widget> widgetsInArea = new ArrayList<>();
+
+        for (String id : widgetsByPosition.candidates(area)) {
+            Widget widget = getWidget(id);
+
+            if (area.contains(widget)) {
+                widgetsInArea.add(widget);
+            }
+        }
+
+        widgetsInArea.sort(Comparator.comparing(Widget::getZ));
+
+        return widgetsInArea;
+    }
+
+    @Override
+    public List<Widget> getWidgets(int afterZ, int limit) {
+        List<Widget> page = new ArrayList<>();
+
+        if (afterZ == Integer.MAX_VALUE) {
+            return page;
+        }
+
+        Iterator<Widget> widgetIterator = widgetsByZ.iterator(widgetsByZ.rank(afterZ + 1));
+
+        while (page.size() < limit && widgetIterator.hasNext()) {
+            page.add(widgetIterator.next());
+        }
+
+        return page;
+    }
+
+    @Override
+    public Widget getWidget(String id) {
+        Long orderKey = orderKeysById.get(id);
+
+        return (orderKey == null) ? null : widgetsByZ.get(orderKey);
+    }
+
+    public boolean containsWidget(String id) {
+        return orderKeysById.containsKey(id);
+    }
+
+    /**
+     * The z that puts a widget on top of every other widget except {@code excludedId}.
+     */
+    public int nextZ(String excludedId) {
+        int size = widgetsByZ.size();
+        Widget topWidget = (size == 0) ? null : widgetsByZ.widgetAt(size - 1);
+
+        if (topWidget != null && topWidget.getId().equals(excludedId)) {
+            topWidget = (size == 1) ? null : widgetsByZ.widgetAt(size - 2);
+        }
+
+        return (topWidget == null) ? 1 : topWidget.getZ() + 1;
+    }
+
+    public int size() {
+        return orderKeysById.size();
+    }
+
+    /**
+     * Widgets pushed up by {@code newWidget} take its last modification time,
+     * so replaying the same widgets always yields the same snapshot.
+     */
+    public WidgetsSnapshot withWidget(Widget newWidget) {
+        ZOrderTree newWidgetsByZ = widgetsByZ;
+        PersistentSortedMap<String, Long> newOrderKeysById = orderKeysById;
+        SpatialIndex newWidgetsByPosition = widgetsByPosition;
+        long newRenumberedWidgets = renumberedWidgets;
+
+        Long oldOrderKey = orderKeysById.get(newWidget.getId());
+
+        if (oldOrderKey != null) {
+            newWidgetsByPosition = newWidgetsByPosition.without(newWidgetsByZ.get(oldOrderKey));
+            newWidgetsByZ = newWidgetsByZ.remove(oldOrderKey);
+        }
+
+        int z = newWidget.getZ();
+        int index = newWidgetsByZ.rank(z);
+        int runLength = runLength(newWidgetsByZ, index, z);
+
+        if (runLength > 0) {
+            newWidgetsByZ = newWidgetsByZ.shiftUp(z, z + runLength - 1, newWidget.getLastModified());
+        }
+
+        Long orderKey = orderKeyAt(newWidgetsByZ, index);
+
+        if (orderKey == null) {
+            Renumbering renumbering = new Renumbering(newWidgetsByZ, newOrderKeysById, index);
+            newWidgetsByZ = renumbering.widgetsByZ;
+            newOrderKeysById = renumbering.orderKeysById;
+            orderKey = renumbering.freeOrderKey;
+            newRenumberedWidgets += renumbering.renumberedWidgets;
+        }
+
+        newWidgetsByZ = newWidgetsByZ.put(orderKey, newWidget);
+        newOrderKeysById = newOrderKeysById.put(newWidget.getId(), orderKey);
+        newWidgetsByPosition = newWidgetsByPosition.with(newWidget);
+
+        return new WidgetsSnapshot(newWidgetsByZ, newOrderKeysById, newWidgetsByPosition,
+                version + 1, shiftedWidgets + runLength, newRenumberedWidgets);
+    }
+
+    public WidgetsSnapshot withoutWidget(String id) {
+        Long orderKey = orderKeysById.get(id);
+
+        if (orderKey == null) {
+            return this;
+        }
+
+        return new WidgetsSnapshot(widgetsByZ.remove(orderKey), orderKeysById.remove(id),
+                widgetsByPosition.without(widgetsByZ.get(orderKey)), version + 1, shiftedWidgets, renumberedWidgets);
+    }
+
+    /**
+     * Length of the run of widgets occupying {@code z, z + 1, ...} up to the first free z,
+     * where {@code index} is the rank of {@code z}. Only this run has to move when a widget
+     * is inserted at {@code z}. Since z is strictly increasing, {@code z(i) - i} never
+     * decreases, so the end of the run is found by binary search.
+     */
+    private static int runLength(ZOrderTree widgetsByZ, int index, int z) {
+        int size = widgetsByZ.size();
+
+        if (index == size || widgetsByZ.zAt(index) != z) {
+            return 0;
+        }
+
+        int lastInRun = index, firstAfterRun = size;
+
+        while (firstAfterRun - lastInRun > 1) {
+            int middle = (lastInRun + firstAfterRun) >>> 1;
+
+            if (widgetsByZ.zAt(middle) == z + (middle - index)) {
+                lastInRun = middle;
+            } else {
+                firstAfterRun = middle;
+            }
+        }
+
+        return lastInRun - index + 1;
+    }
+
+    /**
+     * A free order key between the widgets at {@code index - 1} and {@code index},
+     * or {@code null} when the neighbours' keys are adjacent and the tree needs renumbering.
+     */
+    private static Long orderKeyAt(ZOrderTree widgetsByZ, int index) {
+        int size = widgetsByZ.size();
+
+        if (size == 0) {
+            return 0L;
+        }
+
+        if (index == 0) {
+            long next = widgetsByZ.orderKeyAt(0);
+            return (next < Long.MIN_VALUE / 2) ? null : next - ORDER_KEY_GAP;
+        }
+
+        long previous = widgetsByZ.orderKeyAt(index - 1);
+
+        if (index == size) {
+            return (previous > Long.MAX_VALUE / 2) ? null : previous + ORDER_KEY_GAP;
+        }
+
+        long next = widgetsByZ.orderKeyAt(index);
+
+        return (next - previous < 2) ? null : previous + (next - previous) / 2;
+    }
+
+    private static WidgetsSnapshot build(List<Widget> widgets, SpatialIndex widgetsByPosition, long version) {
+        long[] orderKeys = new long[widgets.size()];
+        PersistentSortedMap<String, Long> orderKeysById = PersistentSortedMap.empty();
+
+        for (int i = 0; i < orderKeys.length; i++) {
+            orderKeys[i] = (i - orderKeys.length / 2) * ORDER_KEY_GAP;
+            orderKeysById = orderKeysById.put(widgets.get(i).getId(), orderKeys[i]);
+        }
+
+        return new WidgetsSnapshot(ZOrderTree.build(widgets, orderKeys), orderKeysById, widgetsByPosition,
+                version, 0, 0);
+    }
+
+    /**
+     * Spreads the order keys around {@code index} evenly again, leaving a free key at {@code index}.
+     * Keys are split into aligned blocks of 2^i keys. The smallest block around the insertion
+     * point holding at most 2^(i/2) widgets, the new one included, gets its keys spread over it;
+     * widgets outside keep theirs. This is the list labeling scheme of Bender et al., "Two
+     * simplified algorithms for maintaining order in a list", which renumbers a logarithmic number
+     * of widgets per insert, amortized, instead of the whole board whenever two neighbours run out
+     * of keys between them.
+     */
+    private static final class Renumbering {
+        private final ZOrderTree widgetsByZ;
+        private final PersistentSortedMap<String, Long> orderKeysById;
+        private final long freeOrderKey;
+        private final int renumberedWidgets;
+
+        Renumbering(ZOrderTree widgetsByZ, PersistentSortedMap<String, Long> orderKeysById, int index) {
+            // Unsigned offsets of the keys, so blocks align the same way across zero
+            long anchor = widgetsByZ.orderKeyAt((index == 0) ? 0 : index - 1) ^ Long.MIN_VALUE;
+            int bits = 1;
+            long first, last;
+            int from, count;
+
+            while (true) {
+                first = anchor & -(1L << bits);
+                last = first + (1L << bits) - 1;
+                from = widgetsByZ.keysBelow(first ^ Long.MIN_VALUE);
+                count = ((last == -1) ? widgetsByZ.size() : widgetsByZ.keysBelow((last + 1) ^ Long.MIN_VALUE)) - from;
+
+                // count + 1 <= 2^(bits / 2), which always holds by 2^62 keys, as count is an int
+                long widgets = count + 1L;
+
+                if (widgets * widgets <= 1L << bits) {
+                    break;
+                }
+
+                bits++;
+            }
+
+            long step = Long.divideUnsigned(last - first, count + 1L);
+            List<Widget> widgets = new ArrayList<>(count);
+            Iterator<Widget> widgetIterator = widgetsByZ.iterator(from);
+
+            for (int i = 0; i < count; i++) {
+                Widget widget = widgetIterator.next();
+                widgets.add(widget);
+                widgetsByZ = widgetsByZ.remove(orderKeysById.get(widget.getId()));
+            }
+
+            for (int i = 0, slot = 0; i < count; i++, slot++) {
+                if (from + i == index) {
+                    slot++;
+                }
+
+                long orderKey = (first + step * (slot + 1)) ^ Long.MIN_VALUE;
+                widgetsByZ = widgetsByZ.put(orderKey, widgets.get(i));
+                orderKeysById = orderKeysById.put(widgets.get(i).getId(), orderKey);
+            }
+
+            this.widgetsByZ = widgetsByZ;
+            this.orderKeysById = orderKeysById;
+            this.freeOrderKey = (first + step * (index - from + 1)) ^ Long.MIN_VALUE;
+            this.renumberedWidgets = count;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+
+import java.util.List;
+
+/**
+ * Board stored as packed records sorted by z, shared by {@link ColumnarWidgets} and {@link OffHeapWidgets}.
+ */
+interface WidgetsTable {
+    int size();
+
+    List<Widget> getWidgets();
+
+    List<Widget> getWidgets(Area area);
+
+    List<Widget> getWidgets(int afterZ, int limit);
+
+    Widget getWidget(String id);
+
+    boolean containsWidget(String id);
+
+    int nextZ(String excludedId);
+
+    void put(Widget widget);
+
+    boolean remove(String id);
+}
@@ -0,0 +1,28 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Read-only state of a board, in z order.
+ */
+public interface WidgetsView {
+    Collection<Widget> getWidgets();
+
+    List<Widget> getWidgets(Area area);
+
+    /**
+     * Up to {@code limit} widgets with z greater than {@code afterZ}, in z order.
+     */
+    List<Widget> getWidgets(int afterZ, int limit);
+
+    Widget getWidget(String id);
+
+    /**
+     * Number of changes made to the board so far; the same version always means the same widgets.
+     */
+    long getVersion();
+}
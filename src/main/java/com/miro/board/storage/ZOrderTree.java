@@ -0,0 +1,475 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Widget;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Persistent AVL tree of widgets ordered by a stable, sparse order key.
+ * The order keys follow the z order, but unlike z they never change when
+ * a run of widgets is pushed up, so the id index can point at them.
+ *
+ * <p>Pushing a run up is recorded as a lazy shift on the O(log n) subtrees
+ * covering it. Stored widgets keep their old z until the shift is pushed down
+ * by a later write on the same path; readers apply pending shifts on the fly.
+ * A node keeps the widget it last materialized this way, so reading a shifted
+ * widget again returns the same instance instead of a copy per read.
+ */
+final class ZOrderTree {
+    static final ZOrderTree EMPTY = new ZOrderTree(null);
+
+    private final Node root;
+
+    private ZOrderTree(Node root) {
+        this.root = root;
+    }
+
+    static ZOrderTree build(List<Widget> widgets, long[] orderKeys) {
+        return new ZOrderTree(build(widgets, orderKeys, 0, widgets.size() - 1));
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    Widget get(long orderKey) {
+        Node node = root;
+        int shift = 0;
+        LocalDateTime shiftedAt = null;
+
+        while (node != null) {
+            shift += node.shift;
+            shiftedAt = later(shiftedAt, node.shiftedAt);
+
+            if (orderKey == node.orderKey) {
+                return node.widget(shift, shiftedAt);
+            }
+
+            node = (orderKey < node.orderKey) ? node.left : node.right;
+        }
+
+        return null;
+    }
+
+    /**
+     * Number of widgets with an order key less than {@code orderKey}.
+     */
+    int keysBelow(long orderKey) {
+        Node node = root;
+        int count = 0;
+
+        while (node != null) {
+            if (node.orderKey < orderKey) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Number of widgets with z less than {@code z}.
+     */
+    int rank(int z) {
+        Node node = root;
+        int rank = 0, shift = 0;
+
+        while (node != null) {
+            shift += node.shift;
+
+            if (node.widget.getZ() + shift < z) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return rank;
+    }
+
+    Widget widgetAt(int index) {
+        Iterator<Widget> widgetIterator = iterator(index);
+
+        return widgetIterator.hasNext() ? widgetIterator.next() : null;
+    }
+
+    int zAt(int index) {
+        Node node = root;
+        int shift = 0;
+
+        while (true) {
+            shift += node.shift;
+            int leftSize = size(node.left);
+
+            if (index == leftSize) {
+                return node.widget.getZ() + shift;
+            }
+
+            if (index < leftSize) {
+                node = node.left;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    long orderKeyAt(int index) {
+        Node node = root;
+
+        while (true) {
+            int leftSize = size(node.left);
+
+            if (index == leftSize) {
+                return node.orderKey;
+            }
+
+            if (index < leftSize) {
+                node = node.left;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Stores a widget with its actual z. The caller picks an order key
+     * that keeps the tree ordered by z.
+     */
+    ZOrderTree put(long orderKey, Widget widget) {
+        return new ZOrderTree(put(root, orderKey, widget));
+    }
+
+    ZOrderTree remove(long orderKey) {
+        return new ZOrderTree(remove(root, orderKey));
+    }
+
+    /**
+     * Moves every widget with z within {@code [fromZ, toZ]} one step up.
+     * The caller guarantees {@code toZ + 1} is free, so the order is preserved.
+     */
+    ZOrderTree shiftUp(int fromZ, int toZ, LocalDateTime shiftedAt) {
+        return new ZOrderTree(shiftUp(root, fromZ, toZ, shiftedAt));
+    }
+
+    Iterator<Widget> iterator(int fromIndex) {
+        return new WidgetIterator(root, fromIndex);
+    }
+
+    private static Node put(Node node, long orderKey, Widget widget) {
+        if (node == null) {
+            return new Node(orderKey, widget, null, null);
+        }
+
+        node = pushDown(node);
+
+        if (orderKey == node.orderKey) {
+            return new Node(orderKey, widget, node.left, node.right);
+        }
+
+        if (orderKey < node.orderKey) {
+            return balance(node.orderKey, node.widget, put(node.left, orderKey, widget), node.right);
+        }
+
+        return balance(node.orderKey, node.widget, node.left, put(node.right, orderKey, widget));
+    }
+
+    private static Node remove(Node node, long orderKey) {
+        if (node == null) {
+            return null;
+        }
+
+        node = pushDown(node);
+
+        if (orderKey < node.orderKey) {
+            return balance(node.orderKey, node.widget, remove(node.left, orderKey), node.right);
+        }
+
+        if (orderKey > node.orderKey) {
+            return balance(node.orderKey, node.widget, node.left, remove(node.right, orderKey));
+        }
+
+        if (node.left == null) {
+            return node.right;
+        }
+
+        if (node.right == null) {
+            return node.left;
+        }
+
+        Node successor = node.right;
+        int shift = 0;
+        LocalDateTime shiftedAt = null;
+
+        while (true) {
+            shift += successor.shift;
+            shiftedAt = later(shiftedAt, successor.shiftedAt);
+
+            if (successor.left == null) {
+                break;
+            }
+
+            successor = successor.left;
+        }
+
+        return balance(successor.orderKey, successor.widget(shift, shiftedAt),
+                node.left, removeMin(node.right));
+    }
+
+    private static Node removeMin(Node node) {
+        node = pushDown(node);
+
+        if (node.left == null) {
+            return node.right;
+        }
+
+        return balance(node.orderKey, node.widget, removeMin(node.left), node.right);
+    }
+
+    private static Node shiftUp(Node node, int fromZ, int toZ, LocalDateTime shiftedAt) {
+        if (node == null || node.maxZ < fromZ || node.minZ > toZ) {
+            return node;
+        }
+
+        if (fromZ <= node.minZ && node.maxZ <= toZ) {
+            return node.shifted(1, shiftedAt);
+        }
+
+        node = pushDown(node);
+
+        Widget widget = node.widget;
+
+        if (widget.getZ() >= fromZ && widget.getZ() <= toZ) {
+            widget = materialize(widget, 1, shiftedAt);
+        }
+
+        return new Node(node.orderKey, widget,
+                shiftUp(node.left, fromZ, toZ, shiftedAt),
+                shiftUp(node.right, fromZ, toZ, shiftedAt));
+    }
+
+    private static Node pushDown(Node node) {
+        if (node.shift == 0) {
+            return node;
+        }
+
+        return new Node(node.orderKey, node.widget(node.shift, node.shiftedAt),
+                (node.left == null) ? null : node.left.shifted(node.shift, node.shiftedAt),
+                (node.right == null) ? null : node.right.shifted(node.shift, node.shiftedAt));
+    }
+
+    private static Node balance(long orderKey, Widget widget, Node left, Node right) {
+        int leftHeight = height(left), rightHeight = height(right);
+
+        if (leftHeight > rightHeight + 1) {
+            left = pushDown(left);
+
+            if (height(left.left) >= height(left.right)) {
+                return new Node(left.orderKey, left.widget, left.left,
+                        new Node(orderKey, widget, left.right, right));
+            }
+
+            Node leftRight = pushDown(left.right);
+
+            return new Node(leftRight.orderKey, leftRight.widget,
+                    new Node(left.orderKey, left.widget, left.left, leftRight.left),
+                    new Node(orderKey, widget, leftRight.right, right));
+        }
+
+        if (rightHeight > leftHeight + 1) {
+            right = pushDown(right);
+
+            if (height(right.right) >= height(right.left)) {
+                return new Node(right.orderKey, right.widget,
+                        new Node(orderKey, widget, left, right.left), right.right);
+            }
+
+            Node rightLeft = pushDown(right.left);
+
+            return new Node(rightLeft.orderKey, rightLeft.widget,
+                    new Node(orderKey, widget, left, rightLeft.left),
+                    new Node(right.orderKey, right.widget, rightLeft.right, right.right));
+        }
+
+        return new Node(orderKey, widget, left, right);
+    }
+
+    private static Node build(List<Widget> widgets, long[] orderKeys, int from, int to) {
+        if (from > to) {
+            return null;
+        }
+
+        int middle = (from + to) >>> 1;
+
+        return new Node(orderKeys[middle], widgets.get(middle),
+                build(widgets, orderKeys, from, middle - 1),
+                build(widgets, orderKeys, middle + 1, to));
+    }
+
+    private static Widget materialize(Widget widget, int shift, LocalDateTime shiftedAt) {
+        if (shift == 0) {
+            return widget;
+        }
+
+        return new Widget(widget.getId(), widget.getX(), widget.getY(),
+                widget.getZ() + shift, widget.getWidth(), widget.getHeight(), shiftedAt);
+    }
+
+    private static LocalDateTime later(LocalDateTime first, LocalDateTime second) {
+        if (first == null) {
+            return second;
+        }
+
+        return (second == null || first.isAfter(second)) ? first : second;
+    }
+
+    private static int height(Node node) {
+        return (node == null) ? 0 : node.height;
+    }
+
+    private static int size(Node node) {
+        return (node == null) ? 0 : node.size;
+    }
+
+    private static final class Node {
+        private final long orderKey;
+        private final Widget widget;
+        private final Node left;
+        private final Node right;
+        private final int height;
+        private final int size;
+        private final int shift;
+        private final LocalDateTime shiftedAt;
+        private final int minZ;
+        private final int maxZ;
+        // Nodes are shared between trees, so this is only reused when the shifts above match
+        private volatile Widget materialized;
+
+        private Node(long orderKey, Widget widget, Node left, Node right) {
+            this.orderKey = orderKey;
+            this.widget = widget;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+            this.shift = 0;
+            this.shiftedAt = null;
+            this.minZ = (left == null) ? widget.getZ() : left.minZ;
+            this.maxZ = (right == null) ? widget.getZ() : right.maxZ;
+        }
+
+        private Node(Node node, int shift, LocalDateTime shiftedAt) {
+            this.orderKey = node.orderKey;
+            this.widget = node.widget;
+            this.left = node.left;
+            this.right = node.right;
+            this.height = node.height;
+            this.size = node.size;
+            this.shift = node.shift + shift;
+            this.shiftedAt = later(node.shiftedAt, shiftedAt);
+            this.minZ = node.minZ + shift;
+            this.maxZ = node.maxZ + shift;
+        }
+
+        private Node shifted(int shift, LocalDateTime shiftedAt) {
+            return new Node(this, shift, shiftedAt);
+        }
+
+        /**
+         * The widget with {@code shift} and {@code shiftedAt} of the nodes above applied.
+         */
+        private Widget widget(int shift, LocalDateTime shiftedAt) {
+            if (shift == 0) {
+                return widget;
+            }
+
+            Widget cached = materialized;
+
+            if (cached != null && cached.getZ() == widget.getZ() + shift
+                    && Objects.equals(cached.getLastModified(), shiftedAt)) {
+                return cached;
+            }
+
+            cached = materialize(widget, shift, shiftedAt);
+            materialized = cached;
+
+            return cached;
+        }
+    }
+
+    private static final class Frame {
+        private final Node node;
+        private final int shift;
+        private final LocalDateTime shiftedAt;
+
+        private Frame(Node node, int shift, LocalDateTime shiftedAt) {
+            this.node = node;
+            this.shift = shift;
+            this.shiftedAt = shiftedAt;
+        }
+    }
+
+    private static final class WidgetIterator implements Iterator<Widget> {
+        private final Deque<Frame> stack = new ArrayDeque<>();
+
+        private WidgetIterator(Node root, int fromIndex) {
+            Node node = root;
+            int shift = 0;
+            LocalDateTime shiftedAt = null;
+
+            while (node != null) {
+                shift += node.shift;
+                shiftedAt = later(shiftedAt, node.shiftedAt);
+                int leftSize = size(node.left);
+
+                if (fromIndex <= leftSize) {
+                    stack.push(new Frame(node, shift, shiftedAt));
+
+                    if (fromIndex == leftSize) {
+                        break;
+                    }
+
+                    node = node.left;
+                } else {
+                    fromIndex -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Widget next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+
+            Frame frame = stack.pop();
+            int shift = frame.shift;
+            LocalDateTime shiftedAt = frame.shiftedAt;
+
+            for (Node child = frame.node.right; child != null; child = child.left) {
+                shift += child.shift;
+                shiftedAt = later(shiftedAt, child.shiftedAt);
+                stack.push(new Frame(child, shift, shiftedAt));
+            }
+
+            return frame.node.widget(frame.shift, frame.shiftedAt);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.miro.board;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.junit.Assert.*;
+
+/**
+ * The {@code virtual-threads} profile runs requests on Tomcat on virtual threads.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual-threads")
+@Import(VirtualThreadsProfileTest.ThreadController.class)
+public class VirtualThreadsProfileTest {
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void whenVirtualThreadsProfileActive_thenRequestsRunOnVirtualThreads() {
+        assertEquals(Boolean.TRUE, restTemplate.getForObject("/test/virtual", Boolean.class));
+    }
+
+    @RestController
+    static class ThreadController {
+        @GetMapping("/test/virtual")
+        boolean isVirtual() {
+            return Thread.currentThread().isVirtual();
+        }
+    }
+}
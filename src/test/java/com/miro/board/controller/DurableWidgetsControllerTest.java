@@ -0,0 +1,92 @@
+package com.miro.board.controller;
+
+import com.miro.board.service.BatchingWidgetsService;
+import com.miro.board.service.WidgetsService;
+import com.miro.board.storage.FsyncPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * The application with {@code widgets.storage=durable} and its log settings as written in a properties file.
+ */
+@RunWith(SpringRunner.class)
+@WebMvcTest(properties = {"widgets.storage=durable", "widgets.wal.fsync=per-batch"})
+@AutoConfigureMockMvc
+@DirtiesContext
+public class DurableWidgetsControllerTest {
+    private static final Path WAL_DIRECTORY = Paths.get("target", "wal-" + UUID.randomUUID());
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WidgetsService widgetsService;
+
+    @Value("${widgets.wal.fsync}")
+    private FsyncPolicy fsyncPolicy;
+
+    @DynamicPropertySource
+    static void walDirectory(DynamicPropertyRegistry registry) {
+        registry.add("widgets.wal.directory", WAL_DIRECTORY::toString);
+    }
+
+    @Test
+    public void whenDurableStorageConfigured_thenBoardsAreLogged() {
+        Assert.assertTrue(widgetsService instanceof BatchingWidgetsService);
+        Assert.assertEquals(FsyncPolicy.PER_BATCH, fsyncPolicy);
+    }
+
+    @Test
+    public void whenBoardOnlyRead_thenNoStorageIsCreated() throws Exception {
+        long boards = boardDirectories();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/boards/unknown/widgets"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.get("/boards/unknown/widgets/1"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        Assert.assertEquals(boards, boardDirectories());
+    }
+
+    @Test
+    public void whenBoardWrittenTo_thenItIsStoredAndReadable() throws Exception {
+        long boards = boardDirectories();
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/boards/written/widgets")
+                .content("{\"x\": 1, \"y\": 2, \"width\": 10, \"height\": 5}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated());
+
+        Assert.assertEquals(boards + 1, boardDirectories());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/boards/written/widgets"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1));
+    }
+
+    private static long boardDirectories() throws IOException {
+        try (Stream<Path> paths = Files.list(WAL_DIRECTORY)) {
+            return paths.count();
+        }
+    }
+}
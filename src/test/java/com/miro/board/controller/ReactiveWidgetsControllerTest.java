@@ -0,0 +1,225 @@
+package com.miro.board.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.service.WidgetsService;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.List;
+
+@RunWith(SpringRunner.class)
+@WebFluxTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ReactiveWidgetsControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private WidgetsService widgetsService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void whenGetRequestToWidgetsByIdAndWidgetNotFound_thenApiError() throws Exception {
+        byte[] body = webTestClient.get().uri("/widgets/1")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody().returnResult().getResponseBody();
+
+        Assert.assertEquals("Widget not found for id: 1", objectMapper.readTree(body).get("message").asText());
+    }
+
+    @Test
+    public void whenPostRequestToWidgetsAndInvalidData_thenBadRequest() {
+        webTestClient.post().uri("/widgets")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"x\": \"1\", \"y\": \"2\", \"width\": \"-10\", \"height\": \"5\"}")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void whenWidgetCreated_thenItCanBeReadById() throws Exception {
+        JsonNode created = create(1, 2, 3);
+
+        JsonNode widget = objectMapper.readTree(webTestClient.get().uri("/widgets/" + created.get("id").asText())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody());
+
+        Assert.assertEquals(created, widget);
+    }
+
+    @Test
+    public void whenGetRequestToWidgets_thenEveryWidgetInZOrder() throws Exception {
+        create(0, 0, 2);
+        create(0, 0, 1);
+
+        JsonNode widgets = objectMapper.readTree(webTestClient.get().uri("/widgets")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody().returnResult().getResponseBody());
+
+        Assert.assertEquals(2, widgets.size());
+        Assert.assertEquals(1, widgets.get(0).get("z").asInt());
+        Assert.assertEquals(2, widgets.get(1).get("z").asInt());
+    }
+
+    @Test
+    public void whenGetRequestToEmptyBoard_thenEmptyArray() {
+        webTestClient.get().uri("/widgets")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("[]");
+    }
+
+    @Test
+    public void whenNdjsonAccepted_thenOneWidgetPerLine() throws Exception {
+        for (int z = 0; z < 1_000; z++) {
+            create(z, z, z);
+        }
+
+        String body = webTestClient.get().uri("/widgets")
+                .accept(MediaType.valueOf(WidgetsJsonWriter.APPLICATION_NDJSON_VALUE))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = body.split("\n");
+
+        Assert.assertEquals(1_000, lines.length);
+
+        for (int z = 0; z < lines.length; z++) {
+            Assert.assertEquals(z, objectMapper.readTree(lines[z]).get("z").asInt());
+        }
+    }
+
+    @Test
+    public void whenBoardUnchangedSinceTag_thenNotModified() throws Exception {
+        create(0, 0, 0);
+
+        EntityExchangeResult<byte[]> result = webTestClient.get().uri("/widgets")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult();
+        String eTag = result.getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/widgets")
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        create(1, 1, 1);
+
+        webTestClient.get().uri("/widgets")
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    public void whenChangesSinceTagRequested_thenOnlyLaterWidgets() throws Exception {
+        create(0, 0, 0);
+
+        String eTag = webTestClient.get().uri("/widgets")
+                .exchange()
+                .expectBody().returnResult()
+                .getResponseHeaders().getETag();
+        JsonNode created = create(5, 5, 5);
+
+        JsonNode changes = objectMapper.readTree(webTestClient.get().uri("/widgets/changes?since={tag}", eTag)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().returnResult().getResponseBody());
+
+        Assert.assertFalse(changes.get("resync").asBoolean());
+        Assert.assertEquals(1, changes.get("created").size());
+        Assert.assertEquals(created.get("id"), changes.get("created").get(0).get("id"));
+    }
+
+    @Test
+    public void whenPageRequestedWithArea_thenBadRequest() {
+        webTestClient.get().uri("/widgets?limit=2&x1=0&y1=0&x2=100&y2=100")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void whenResyncsFollowEachOther_thenEachIsAnswered() throws Exception {
+        create(0, 0, 0);
+
+        for (int i = 0; i < 6; i++) {
+            JsonNode changes = objectMapper.readTree(webTestClient.get()
+                    .uri("/widgets/changes?since={tag}", "\"0123abcd-0-json\"")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().exists(HttpHeaders.ETAG)
+                    .expectBody().returnResult().getResponseBody());
+
+            Assert.assertTrue(changes.get("resync").asBoolean());
+            Assert.assertEquals(1, changes.get("created").size());
+        }
+    }
+
+    @Test
+    public void whenChangesSinceMalformedTagRequested_thenBadRequest() {
+        webTestClient.get().uri("/widgets/changes?since={tag}", "a-b")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void whenChangesStreamedOneAtATime_thenResyncThenChanges() throws Exception {
+        create(0, 0, 0);
+
+        List<ServerSentEvent<String>> events = webTestClient.get().uri("/widgets/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() { })
+                .getResponseBody()
+                .limitRate(1)
+                .doOnNext(event -> {
+                    if ("resync".equals(event.event())) {
+                        widgetsService.createWidget(new WidgetDTO(5, 5, 5, 10, 10));
+                    }
+                })
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        Assert.assertEquals("resync", events.get(0).event());
+        Assert.assertEquals("changes", events.get(1).event());
+        Assert.assertTrue(events.get(1).data().contains("\"created\":[{"));
+    }
+
+    private JsonNode create(int x, int y, int z) throws Exception {
+        return objectMapper.readTree(webTestClient.post().uri("/widgets")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(objectMapper.writeValueAsString(new WidgetDTO(x, y, z, 10, 10)))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().returnResult().getResponseBody());
+    }
+}
@@ -0,0 +1,24 @@
+package com.miro.board.controller;
+
+import com.miro.board.model.exception.TooManyResyncsException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResyncLimiterTest {
+    @Test
+    public void testResyncsOverLimitAreRejectedUntilOneIsReleased() {
+        ResyncLimiter limiter = new ResyncLimiter(1);
+        Runnable release = limiter.acquire();
+
+        try {
+            limiter.acquire();
+            fail("Second resync should be rejected");
+        } catch (TooManyResyncsException ex) {
+            assertTrue(ex.getMessage().contains("More than 1 resyncs"));
+        }
+
+        release.run();
+        limiter.acquire().run();
+    }
+}
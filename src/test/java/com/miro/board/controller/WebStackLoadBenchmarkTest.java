@@ -0,0 +1,170 @@
+package com.miro.board.controller;
+
+import com.miro.board.Application;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.service.WidgetsService;
+import org.junit.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the servlet stack, on Tomcat's worker pool or on virtual threads, and the reactive stack
+ * under the same load: clients reading a large board slowly, while another client reads single
+ * widgets. Tomcat runs with few threads, so slow readers can hold all of them. Latencies are printed
+ * rather than asserted, since they depend on the machine.
+ */
+public class WebStackLoadBenchmarkTest {
+    private static final int WIDGETS = 20_000;
+    private static final int SERVLET_THREADS = 8;
+    private static final int SLOW_READERS = 4 * SERVLET_THREADS;
+    private static final long LOAD_MILLIS = 5_000;
+    private static final int READ_TIMEOUT_MILLIS = 2_000;
+
+    @Test
+    public void testReactiveStackReadsWidgetsBehindSlowReaders() throws Exception {
+        Latencies servlet = measure(WebApplicationType.SERVLET);
+        Latencies reactive = measure(WebApplicationType.REACTIVE);
+
+        System.out.println("Servlet stack:  " + servlet);
+        System.out.println("Reactive stack: " + reactive);
+
+        assertEquals(0, reactive.failed);
+        assertFalse(reactive.millis.isEmpty());
+    }
+
+    @Test
+    public void testVirtualThreadsReadWidgetsBehindSlowReaders() throws Exception {
+        Latencies workers = measure(WebApplicationType.SERVLET);
+        Latencies virtual = measure(WebApplicationType.SERVLET, "spring.threads.virtual.enabled=true");
+
+        System.out.println("Worker threads:  " + workers);
+        System.out.println("Virtual threads: " + virtual);
+
+        assertEquals(0, virtual.failed);
+        assertFalse(virtual.millis.isEmpty());
+    }
+
+    private static Latencies measure(WebApplicationType type, String... properties) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .web(type)
+                .properties("server.port=0", "server.tomcat.threads.max=" + SERVLET_THREADS,
+                        "widgets.storage=default", "widgets.metrics.enabled=false")
+                .properties(properties)
+                .run();
+        ExecutorService readers = Executors.newFixedThreadPool(SLOW_READERS);
+
+        try {
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            WidgetsService board = context.getBean(WidgetsService.class);
+            String id = null;
+
+            for (int i = 0; i < WIDGETS; i++) {
+                id = board.createWidget(new WidgetDTO(i, i, null, 10, 10)).getId();
+            }
+
+            long deadline = System.currentTimeMillis() + LOAD_MILLIS;
+
+            for (int i = 0; i < SLOW_READERS; i++) {
+                readers.execute(() -> readSlowly(port, deadline));
+            }
+
+            Thread.sleep(500);
+
+            Latencies latencies = new Latencies();
+
+            while (System.currentTimeMillis() < deadline) {
+                long start = System.nanoTime();
+
+                if (get(URI.create("http://localhost:" + port + "/widgets/" + id).toURL())) {
+                    latencies.millis.add((System.nanoTime() - start) / 1e6);
+                } else {
+                    latencies.failed++;
+                }
+            }
+
+            return latencies;
+        } finally {
+            readers.shutdownNow();
+            readers.awaitTermination(10, TimeUnit.SECONDS);
+            context.close();
+        }
+    }
+
+    /**
+     * Reads the whole board at about 100 KB/s until the deadline, far too slow to ever finish.
+     */
+    private static void readSlowly(int port, long deadline) {
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("localhost", port));
+
+            OutputStream output = socket.getOutputStream();
+            output.write("GET /widgets HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+
+            InputStream input = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+
+            while (System.currentTimeMillis() < deadline && input.read(buffer) >= 0) {
+                Thread.sleep(10);
+            }
+        } catch (IOException | InterruptedException ex) {
+            // Closed by the end of the run
+        }
+    }
+
+    private static boolean get(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(READ_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+
+            try (InputStream input = connection.getInputStream()) {
+                while (input.read() >= 0) {
+                    // Drain the widget
+                }
+            }
+
+            return connection.getResponseCode() == 200;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static final class Latencies {
+        private final List<Double> millis = new ArrayList<>();
+        private int failed;
+
+        private double percentile(double percentile) {
+            List<Double> sorted = new ArrayList<>(millis);
+            Collections.sort(sorted);
+
+            return sorted.isEmpty() ? Double.NaN : sorted.get((int) (percentile * (sorted.size() - 1)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d widget reads, p50 %.2f ms, p99 %.2f ms, max %.2f ms, %d timed out",
+                    millis.size(), percentile(0.5), percentile(0.99), percentile(1), failed);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.miro.board.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.service.ColumnarWidgetsService;
+import com.miro.board.service.DefaultWidgetsService;
+import com.miro.board.service.WidgetsService;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WidgetJsonCacheTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    public void testJsonMatchesObjectMapper() throws IOException {
+        WidgetJsonCache cache = new WidgetJsonCache(objectMapper, 1024 * 1024, WidgetJsonCache.Eviction.LRU);
+        Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 3, 10, 5);
+
+        assertEquals(objectMapper.writeValueAsString(widget), new String(cache.getJson(widget), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testHitReturnsCachedJson() {
+        WidgetJsonCache cache = new WidgetJsonCache(objectMapper, 1024 * 1024, WidgetJsonCache.Eviction.LRU);
+        Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 3, 10, 5);
+
+        byte[] json = cache.getJson(widget);
+
+        assertSame(json, cache.getJson(widget));
+        assertEquals(json.length + WidgetJsonCache.ENTRY_OVERHEAD, cache.size());
+    }
+
+    @Test
+    public void testNewVersionOfWidgetIsSerializedAgain() {
+        WidgetJsonCache cache = new WidgetJsonCache(objectMapper, 1024 * 1024, WidgetJsonCache.Eviction.LRU);
+        Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 3, 10, 5);
+        Widget movedWidget = new Widget(widget.getId(), 7, 2, 3, 10, 5);
+
+        cache.getJson(widget);
+
+        assertTrue(new String(cache.getJson(movedWidget), StandardCharsets.UTF_8).contains("\"x\":7"));
+    }
+
+    @Test
+    public void testSecondReadOfShiftedBoardHitsCache() {
+        WidgetJsonCache cache = new WidgetJsonCache(objectMapper, 1024 * 1024, WidgetJsonCache.Eviction.LRU);
+        WidgetsService board = new DefaultWidgetsService();
+
+        // Every create lands at the bottom, so all but the last widget carry pending shifts
+        for (int i = 0; i < 50; i++) {
+            board.createWidget(new WidgetDTO(i, i, 1, 10, 5));
+        }
+
+        List<byte[]> firstRead = new ArrayList<>();
+        board.getWidgets().forEach(widget -> firstRead.add(cache.getJson(widget, board.keepsWidgets())));
+        long size = cache.size();
+
+        List<byte[]> secondRead = new ArrayList<>();
+        board.getWidgets().forEach(widget -> secondRead.add(cache.getJson(widget, board.keepsWidgets())));
+
+        for (int i = 0; i < firstRead.size(); i++) {
+            assertSame(firstRead.get(i), secondRead.get(i));
+        }
+
+        assertEquals(size, cache.size());
+    }
+
+    @Test
+    public void testUncachedWidgetIsNotKept() {
+        WidgetJsonCache cache = new WidgetJsonCache(objectMapper, 1024 * 1024, WidgetJsonCache.Eviction.LRU);
+        Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 3, 10, 5);
+
+        assertFalse(new ColumnarWidgetsService().keepsWidgets());
+        assertNotSame(cache.getJson(widget, false), cache.getJson(widget, false));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testZeroMaxSizeCachesNothing() {
+        WidgetJsonCache cache = new WidgetJsonCache(objectMapper, 0, WidgetJsonCache.Eviction.LRU);
+        Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 3, 10, 5);
+
+        assertNotSame(cache.getJson(widget), cache.getJson(widget));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSizeStaysWithinMaxSize() {
+        List<Widget> widgets = widgets(1000);
+        long maxSize = 20 * entrySize(widgets.get(0));
+        WidgetJsonCache cache = new WidgetJsonCache(objectMapper, maxSize, WidgetJsonCache.Eviction.LRU);
+
+        for (Widget widget : widgets) {
+            cache.getJson(widget);
+            assertTrue(cache.size() <= maxSize);
+        }
+
+        assertTrue(cache.size() > maxSize / 2);
+    }
+
+    @Test
+    public void testFifoEvictsOldestEntry() {
+        List<Widget> widgets = widgets(4);
+        WidgetJsonCache cache = new WidgetJsonCache(objectMapper, 3 * entrySize(widgets.get(0)),
+                WidgetJsonCache.Eviction.FIFO);
+        byte[] first = cache.getJson(widgets.get(0));
+        byte[] second = cache.getJson(widgets.get(1));
+        cache.getJson(widgets.get(2));
+
+        cache.getJson(widgets.get(0));
+        cache.getJson(widgets.get(3));
+
+        assertNotSame(first, cache.getJson(widgets.get(0)));
+        assertNotSame(second, cache.getJson(widgets.get(1)));
+    }
+
+    @Test
+    public void testLruKeepsRecentlyReadEntry() {
+        List<Widget> widgets = widgets(4);
+        WidgetJsonCache cache = new WidgetJsonCache(objectMapper, 3 * entrySize(widgets.get(0)),
+                WidgetJsonCache.Eviction.LRU);
+        byte[] first = cache.getJson(widgets.get(0));
+        byte[] second = cache.getJson(widgets.get(1));
+        cache.getJson(widgets.get(2));
+
+        cache.getJson(widgets.get(0));
+        cache.getJson(widgets.get(3));
+
+        assertSame(first, cache.getJson(widgets.get(0)));
+        assertNotSame(second, cache.getJson(widgets.get(1)));
+    }
+
+    private long entrySize(Widget widget) {
+        return new WidgetJsonCache(objectMapper, 0, WidgetJsonCache.Eviction.LRU).getJson(widget).length
+                + WidgetJsonCache.ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Widgets whose JSON has the same length, so a cache of n entries holds exactly n of them.
+     */
+    private static List<Widget> widgets(int count) {
+        List<Widget> widgets = new ArrayList<>(count);
+        LocalDateTime lastModified = LocalDateTime.of(2020, 8, 1, 12, 0);
+
+        for (int i = 0; i < count; i++) {
+            widgets.add(new Widget(WidgetIdGenerator.UUIDS.nextId(), 1000 + i % 9000, 2, 3, 10, 5, lastModified));
+        }
+
+        return widgets;
+    }
+}
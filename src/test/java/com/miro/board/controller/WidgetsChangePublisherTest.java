@@ -0,0 +1,163 @@
+package com.miro.board.controller;
+
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.service.DefaultWidgetsService;
+import com.miro.board.service.WidgetsService;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WidgetsChangePublisherTest {
+    private final WidgetsChangePublisher publisher = new WidgetsChangePublisher(10, 60_000);
+
+    @After
+    public void closePublisher() {
+        publisher.close();
+    }
+
+    @Test
+    public void testChangesAfterResyncAreSent() throws Exception {
+        WidgetsService board = new DefaultWidgetsService();
+        List<WidgetsChanges> sent = new CopyOnWriteArrayList<>();
+
+        board.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+        publisher.subscribe(board, -1, sent::add);
+        board.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+
+        awaitSize(sent, 2);
+
+        assertTrue(sent.get(0).isResync());
+        assertFalse(sent.get(1).isResync());
+        assertEquals(board.getVersion(), sent.get(sent.size() - 1).getVersion());
+    }
+
+    @Test
+    public void testFeedIsDroppedWithLastSubscriber() {
+        WidgetsService board = new DefaultWidgetsService();
+
+        WidgetsChangePublisher.Subscription first = publisher.subscribe(board, -1, changes -> { });
+        WidgetsChangePublisher.Subscription second = publisher.subscribe(board, -1, changes -> { });
+
+        first.cancel();
+        assertTrue(publisher.hasSubscribers(board));
+
+        second.cancel();
+        assertFalse(publisher.hasSubscribers(board));
+
+        WidgetsChangePublisher.Subscription again = publisher.subscribe(board, -1, changes -> { });
+        assertTrue(publisher.hasSubscribers(board));
+        again.cancel();
+    }
+
+    @Test
+    public void testBoardWithoutVersionIsOnlyReadForResync() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        WidgetsService board = new DefaultWidgetsService() {
+            @Override
+            public long getVersion() {
+                return -1;
+            }
+
+            @Override
+            public WidgetsChanges getChanges(long since) {
+                reads.incrementAndGet();
+                return WidgetsChanges.resync(-1, getWidgets());
+            }
+        };
+
+        publisher.subscribe(board, -1, changes -> { });
+        board.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+        Thread.sleep(100);
+
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void testPendingEventWaitsForReadyChannelAndMergesChanges() throws Exception {
+        WidgetsService board = new DefaultWidgetsService();
+        List<WidgetsChanges> sent = new CopyOnWriteArrayList<>();
+        AtomicInteger demand = new AtomicInteger();
+
+        WidgetsChangePublisher.Subscription subscription = publisher.subscribe(board, -1,
+                new WidgetsChangePublisher.Channel() {
+                    @Override
+                    public void send(WidgetsChanges changes) {
+                        demand.decrementAndGet();
+                        sent.add(changes);
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return demand.get() > 0;
+                    }
+                });
+
+        board.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+        board.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+        Thread.sleep(100);
+
+        assertTrue(sent.isEmpty());
+
+        demand.set(1);
+        subscription.resume();
+        awaitSize(sent, 1);
+
+        assertTrue(sent.get(0).isResync());
+        assertEquals(2, sent.get(0).getCreated().size());
+        assertEquals(board.getVersion(), sent.get(0).getVersion());
+    }
+
+    @Test
+    public void testBlockedSendsUseAtMostSenderThreads() throws Exception {
+        WidgetsChangePublisher bounded = new WidgetsChangePublisher(10, 60_000, 2, false);
+        CountDownLatch unblocked = new CountDownLatch(1);
+        AtomicInteger sending = new AtomicInteger();
+        AtomicInteger maxSending = new AtomicInteger();
+        List<WidgetsChanges> sent = new CopyOnWriteArrayList<>();
+
+        try {
+            for (int i = 0; i < 5; i++) {
+                WidgetsService board = new DefaultWidgetsService();
+                board.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+
+                bounded.subscribe(board, -1, changes -> {
+                    maxSending.accumulateAndGet(sending.incrementAndGet(), Math::max);
+                    try {
+                        unblocked.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+
+                    sending.decrementAndGet();
+                    sent.add(changes);
+                });
+            }
+
+            Thread.sleep(100);
+            assertEquals(2, maxSending.get());
+
+            unblocked.countDown();
+            awaitSize(sent, 5);
+            assertEquals(2, maxSending.get());
+        } finally {
+            bounded.close();
+        }
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+
+        while (list.size() < size) {
+            assertTrue("Only " + list, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
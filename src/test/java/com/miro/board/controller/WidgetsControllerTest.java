@@ -1,15 +1,22 @@
 package com.miro.board.controller;
 
-import com.miro.board.service.DefaultWidgetsService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetOperation;
+import com.miro.board.service.WidgetsService;
 import org.hamcrest.Matchers;
 import org.json.JSONObject;
-import org.junit.Before;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
@@ -17,30 +24,20 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.UUID;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest
 @AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 public class WidgetsControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
-    @Before
-    public void flushDefaultWidgetsServiceStorage() throws NoSuchFieldException, IllegalAccessException {
-        Field widgetsField = DefaultWidgetsService.class.getDeclaredField("widgets");
-        widgetsField.setAccessible(true);
-
-        Field modifiers = Field.class.getDeclaredField("modifiers");
-        modifiers.setAccessible(true);
-        modifiers.setInt(widgetsField, widgetsField.getModifiers() & ~Modifier.FINAL);
-
-        widgetsField.set(null, new AtomicReference<>(Collections.unmodifiableMap(new LinkedHashMap<>())));
-    }
+    @Autowired
+    private WidgetsService widgetsService;
 
     @Test
     public void whenGetRequestToWidgetsByIdAndWidgetNotFound_thenCorrectResponse() throws Exception {
@@ -93,7 +90,330 @@ public class WidgetsControllerTest {
                 .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString(String.format("\"id\":\"%s\"", resultWidgetId))));
     }
 
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
+    @Test
+    public void whenGetRequestToWidgetsAcceptingNdjson_thenOneWidgetPerLine() throws Exception {
+        String widget = "{\"x\": \"1\", \"y\": \"2\", \"width\": \"10\", \"height\": \"5\"}";
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(MockMvcRequestBuilders.post("/widgets")
+                    .content(widget)
+                    .contentType(MediaType.APPLICATION_JSON));
+        }
+
+        String responseBody = mockMvc.perform(MockMvcRequestBuilders.get("/widgets")
+                .accept(WidgetsJsonWriter.APPLICATION_NDJSON_VALUE))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(WidgetsJsonWriter.APPLICATION_NDJSON_VALUE))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] lines = responseBody.split("\n");
+
+        Assert.assertEquals(2, lines.length);
+        Assert.assertEquals(1, new JSONObject(lines[0]).getInt("z"));
+        Assert.assertEquals(2, new JSONObject(lines[1]).getInt("z"));
+    }
+
+    @Test
+    public void whenBatchAndGetRequestsInCbor_thenCborResponses() throws Exception {
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        byte[] batch = cborMapper.writeValueAsBytes(Collections.singletonMap("operations", Arrays.asList(
+                new WidgetOperation(WidgetOperation.Type.CREATE, null, new WidgetDTO(1, 2, null, 10, 5)),
+                new WidgetOperation(WidgetOperation.Type.CREATE, null, new WidgetDTO(3, 4, null, 10, 5)))));
+
+        JsonNode created = cborMapper.readTree(mockMvc.perform(MockMvcRequestBuilders.post("/widgets/batch")
+                .content(batch)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray());
+
+        Assert.assertEquals(2, created.size());
+
+        JsonNode widgets = cborMapper.readTree(mockMvc.perform(MockMvcRequestBuilders.get("/widgets")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray());
+
+        Assert.assertEquals(created, widgets);
+
+        JsonNode widget = cborMapper.readTree(mockMvc.perform(MockMvcRequestBuilders.get("/widgets/" + created.get(1).get("id").asText())
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray());
+
+        Assert.assertEquals(created.get(1), widget);
+    }
+
+    @Test
+    public void whenGetRequestToWidgetsWithCurrentETag_thenNotModified() throws Exception {
+        String widget = "{\"x\": \"1\", \"y\": \"2\", \"width\": \"10\", \"height\": \"5\"}";
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/widgets")
+                .content(widget)
+                .contentType(MediaType.APPLICATION_JSON));
+
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get("/widgets"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/widgets")
+                .content(widget)
+                .contentType(MediaType.APPLICATION_JSON));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, Matchers.not(eTag)));
+    }
+
+    @Test
+    public void whenGetRequestToWidgetByIdWithCurrentETag_thenNotModified() throws Exception {
+        String widget = "{\"x\": \"1\", \"y\": \"2\", \"width\": \"10\", \"height\": \"5\"}";
+
+        String id = new JSONObject(mockMvc.perform(MockMvcRequestBuilders.post("/widgets")
+                .content(widget)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString()).getString("id");
+
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get("/widgets/" + id))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/widgets")
+                .content(widget)
+                .contentType(MediaType.APPLICATION_JSON));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets/" + id)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/widgets/" + id)
+                .content("{\"x\": \"7\", \"y\": \"2\", \"width\": \"10\", \"height\": \"5\"}")
+                .contentType(MediaType.APPLICATION_JSON));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets/" + id)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("\"x\":7")));
+    }
+
+    @Test
+    public void whenGetRequestToWidgetsInArea_thenOnlyWidgetsInsideReturned() throws Exception {
+        String inside = "{\"x\": \"0\", \"y\": \"0\", \"width\": \"100\", \"height\": \"100\"}";
+        String outside = "{\"x\": \"50\", \"y\": \"50\", \"width\": \"100\", \"height\": \"100\"}";
+
+        String insideId = new JSONObject(mockMvc.perform(MockMvcRequestBuilders.post("/widgets")
+                .content(inside)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString()).getString("id");
+
+        String outsideId = new JSONObject(mockMvc.perform(MockMvcRequestBuilders.post("/widgets")
+                .content(outside)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString()).getString("id");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets?x1=0&y1=0&x2=100&y2=150"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString(String.format("\"id\":\"%s\"", insideId))))
+                .andExpect(MockMvcResultMatchers.content().string(Matchers.not(Matchers.containsString(outsideId))));
+    }
+
+    @Test
+    public void whenGetRequestToWidgetsWithIncompleteArea_thenBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets?x1=0&y1=0&x2=100"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("Area filter requires all of x1, y1, x2 and y2")));
+    }
+
+    @Test
+    public void whenGetRequestToWidgetsWithLimit_thenPageReturned() throws Exception {
+        for (int z = 1; z <= 3; z++) {
+            mockMvc.perform(MockMvcRequestBuilders.post("/widgets")
+                    .content(String.format("{\"x\": \"1\", \"y\": \"2\", \"z\": \"%d\", \"width\": \"10\", \"height\": \"5\"}", z))
+                    .contentType(MediaType.APPLICATION_JSON));
+        }
+
+        String responseBody = mockMvc.perform(MockMvcRequestBuilders.get("/widgets?limit=2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.widgets.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.widgets[0].z").value(1))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String next = new JSONObject(responseBody).getString("next");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets?limit=2&after=" + next))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.widgets.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.widgets[0].z").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    public void whenGetRequestToWidgetsWithInvalidLimit_thenBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets?limit=0"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("Limit should be between 1 and 1000")));
+    }
+
+    @Test
+    public void whenGetRequestToWidgetsWithLimitAndArea_thenBadRequest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets?limit=2&x1=0&y1=0&x2=100&y2=100"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("cannot be combined with limit")));
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets?limit=2&x1=0"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void whenRequestsToDifferentBoards_thenBoardsAreIndependent() throws Exception {
+        String board1 = UUID.randomUUID().toString(), board2 = UUID.randomUUID().toString();
+        String widget = "{\"x\": \"1\", \"y\": \"2\", \"width\": \"10\", \"height\": \"5\"}";
+
+        String responseBody = mockMvc.perform(MockMvcRequestBuilders.post("/boards/" + board1 + "/widgets")
+                .content(widget)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String resultWidgetId = new JSONObject(responseBody).getString("id");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/boards/" + board1 + "/widgets/" + resultWidgetId))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString(String.format("\"id\":\"%s\"", resultWidgetId))));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/boards/" + board2 + "/widgets/" + resultWidgetId))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets/" + resultWidgetId))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/boards/" + board2 + "/widgets")
+                .content(widget)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isCreated())
+                .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("\"z\":1")));
+    }
+
+    @Test
+    public void whenRequestsToBoardNeverWrittenTo_thenNotFound() throws Exception {
+        String board = UUID.randomUUID().toString();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/boards/" + board + "/widgets"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound())
+                .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("Board not found for id: " + board)));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/boards/" + board + "/widgets/batch")
+                .content("{\"operations\": [{\"type\": \"DELETE\", \"id\": \"1\"}]}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/boards/" + board + "/widgets/changes").param("since", "\"0123abcd-0-json\""))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    @Test
+    public void whenPostRequestToWidgetsBatch_thenOperationsApplied() throws Exception {
+        String batch = "{\"operations\": ["
+                + "{\"type\": \"CREATE\", \"widget\": {\"x\": 1, \"y\": 2, \"z\": 1, \"width\": 10, \"height\": 5}},"
+                + "{\"type\": \"CREATE\", \"widget\": {\"x\": 3, \"y\": 4, \"z\": 1, \"width\": 10, \"height\": 5}}"
+                + "]}";
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/widgets/batch")
+                .content(batch)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].z").value(1));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].x").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].z").value(2));
+    }
+
+    @Test
+    public void whenPostRequestToWidgetsBatchWithMissingWidget_thenNothingApplied() throws Exception {
+        String batch = "{\"operations\": ["
+                + "{\"type\": \"CREATE\", \"widget\": {\"x\": 1, \"y\": 2, \"width\": 10, \"height\": 5}},"
+                + "{\"type\": \"DELETE\", \"id\": \"1\"}"
+                + "]}";
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/widgets/batch")
+                .content(batch)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    public void whenPostRequestToWidgetsBatchWithIdTooLong_thenBadRequest() throws Exception {
+        String batch = "{\"operations\": [{\"type\": \"DELETE\", \"id\": \"" + String.join("", Collections.nCopies(37, "a")) + "\"}]}";
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/widgets/batch")
+                .content(batch)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    public void whenPostRequestToWidgetsBatchCreateWithId_thenBadRequest() throws Exception {
+        String batch = "{\"operations\": [{\"type\": \"CREATE\", \"id\": \"a\", "
+                + "\"widget\": {\"x\": 1, \"y\": 2, \"width\": 10, \"height\": 5}}]}";
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/widgets/batch")
+                .content(batch)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    public void whenPostRequestToWidgetsBatchWithInvalidWidget_thenBadRequest() throws Exception {
+        String batch = "{\"operations\": [{\"type\": \"CREATE\", \"widget\": {\"x\": 1, \"y\": 2, \"width\": 10}}]}";
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/widgets/batch")
+                .content(batch)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
     @Test
     public void whenPostRequestToWidgetsAndValidDataWithZ_thenCorrectResponse() throws Exception {
         String widget = "{\"x\":\"1\",\"y\":\"2\",\"z\":\"3\",\"width\":\"10\",\"height\":\"5\"}";
@@ -106,7 +426,6 @@ public class WidgetsControllerTest {
                 .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("\"z\":3")));
     }
 
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
     @Test
     public void whenPostRequestToWidgetsAndValidDataWithoutZ_thenCorrectResponse() throws Exception {
         String widget = "{\"x\":\"1\",\"y\":\"2\",\"width\":\"10\",\"height\":\"5\"}";
@@ -119,7 +438,6 @@ public class WidgetsControllerTest {
                 .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("\"z\":1")));
     }
 
-    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
     @Test
     public void whenPostRequestToWidgetsAndMissedX_thenCorrectResponse() throws Exception {
         String widget = "{\"y\":\"2\",\"z\":\"3\",\"width\":\"4\",\"height\":\"5\"}";
@@ -385,5 +703,109 @@ public class WidgetsControllerTest {
                 .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.content().string("true"));
     }
-}
 
+    @Test
+    public void whenGetRequestToWidgetChanges_thenResyncThenChangesAreStreamed() throws Exception {
+        String existingId = widgetsService.createWidget(new WidgetDTO(1, 2, 3, 5, 10)).getId();
+
+        MockHttpServletResponse response = mockMvc.perform(MockMvcRequestBuilders.get("/widgets/changes")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn()
+                .getResponse();
+
+        String events = awaitEvent(response, "event:resync");
+        Assert.assertTrue(events.contains(existingId));
+
+        String createdId = widgetsService.createWidget(new WidgetDTO(1, 2, 3, 5, 10)).getId();
+
+        events = awaitEvent(response, "event:changes");
+        String changes = events.substring(events.indexOf("event:changes"));
+        Assert.assertTrue(changes.contains("\"created\":[{\"id\":\"" + createdId + "\""));
+        Assert.assertTrue(changes.contains("\"shifted\":[{\"id\":\"" + existingId + "\""));
+    }
+
+    @Test
+    public void whenGetRequestToWidgetChangesSinceBoardTag_thenOnlyChangesAreReturned() throws Exception {
+        String existingId = widgetsService.createWidget(new WidgetDTO(1, 2, 3, 5, 10)).getId();
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get("/widgets"))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        String createdId = widgetsService.createWidget(new WidgetDTO(1, 2, 3, 5, 10)).getId();
+
+        String changesETag = mockMvc.perform(MockMvcRequestBuilders.get("/widgets/changes").param("since", eTag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.resync").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created[0].id").value(createdId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.shifted[0].id").value(existingId))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.deleted").isEmpty())
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        Assert.assertNotEquals(eTag, changesETag);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets/changes").param("since", changesETag))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.resync").value(false))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created").isEmpty());
+    }
+
+    @Test
+    public void whenGetRequestToWidgetChangesSinceUnknownTag_thenWholeBoardIsReturned() throws Exception {
+        widgetsService.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/widgets/changes").param("since", "\"restarted-1-json\""))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.resync").value(true))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.created.length()").value(1));
+    }
+
+    @Test
+    public void whenGetRequestToWidgetChangesSinceTagOfAnotherInstance_thenWholeBoardIsReturned() throws Exception {
+        widgetsService.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get("/widgets"))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        String otherInstanceTag = "\"0123abcd-" + eTag.substring(eTag.indexOf('-') + 1);
+
+        Assert.assertNotEquals(eTag, otherInstanceTag);
+
+        // More resyncs than max-resyncs in a row, each giving its permit back once written
+        for (int i = 0; i < 6; i++) {
+            mockMvc.perform(MockMvcRequestBuilders.get("/widgets/changes").param("since", otherInstanceTag))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, eTag))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.resync").value(true))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.created.length()").value(1));
+        }
+    }
+
+    @Test
+    public void whenGetRequestToWidgetChangesSinceMalformedTag_thenBadRequest() throws Exception {
+        String eTag = mockMvc.perform(MockMvcRequestBuilders.get("/widgets"))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        String instanceTag = eTag.substring(1, eTag.indexOf('-'));
+
+        for (String tag : new String[]{"a-b", "\"" + instanceTag + "-zz-json\"", instanceTag + "-1-", "0"}) {
+            mockMvc.perform(MockMvcRequestBuilders.get("/widgets/changes").param("since", tag))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                    .andExpect(MockMvcResultMatchers.content().string(Matchers.containsString("Not a board tag")));
+        }
+    }
+
+    private static String awaitEvent(MockHttpServletResponse response, String event) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+
+        while (!response.getContentAsString().contains(event)) {
+            Assert.assertTrue("No " + event + " in " + response.getContentAsString(),
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+
+        return response.getContentAsString();
+    }
+}
@@ -0,0 +1,219 @@
+package com.miro.board.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.storage.WidgetsSnapshot;
+import org.junit.Assume;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WidgetsJsonWriterTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final WidgetsJsonWriter writer = new WidgetsJsonWriter(
+            new WidgetJsonCache(objectMapper, 0, WidgetJsonCache.Eviction.LRU));
+
+    @Test
+    public void testOneWidgetPerLine() throws IOException {
+        WidgetsSnapshot snapshot = board(3);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        writer.writeLines(snapshot.getWidgets(), output);
+
+        String[] lines = new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n", -1);
+        List<Widget> widgets = new ArrayList<>(snapshot.getWidgets());
+
+        assertEquals(4, lines.length);
+        assertEquals("", lines[3]);
+
+        for (int i = 0; i < 3; i++) {
+            JsonNode node = objectMapper.readTree(lines[i]);
+            assertEquals(widgets.get(i).getId(), node.get("id").asText());
+            assertEquals((int) widgets.get(i).getZ(), node.get("z").asInt());
+            assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(widgets.get(i))), node);
+        }
+    }
+
+    @Test
+    public void testEmptyBoardWritesNothing() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        writer.writeLines(WidgetsSnapshot.EMPTY.getWidgets(), output);
+
+        assertEquals(0, output.size());
+    }
+
+    @Test
+    public void testArrayMatchesObjectMapper() throws IOException {
+        for (WidgetsSnapshot snapshot : new WidgetsSnapshot[]{WidgetsSnapshot.EMPTY, board(1), board(3)}) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            writer.writeArray(snapshot.getWidgets(), output);
+
+            assertEquals(objectMapper.writeValueAsString(snapshot.getWidgets()),
+                    new String(output.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * The response reaches the stream in chunks of the writer's buffer size,
+     * starting after the first few widgets, however large the board is.
+     */
+    @Test
+    public void testBufferedOutputStaysFlatAsBoardGrows() throws IOException {
+        for (int size : new int[]{10_000, 100_000}) {
+            WidgetsSnapshot snapshot = board(size);
+            CountingIterable widgets = new CountingIterable(snapshot.getWidgets());
+            RecordingOutputStream output = new RecordingOutputStream(widgets);
+
+            writer.writeLines(widgets, output);
+
+            assertEquals(size, widgets.count);
+            assertTrue("Largest write was " + output.largestWrite, output.largestWrite <= 16 * 1024);
+            assertTrue("First write after " + output.widgetsBeforeFirstWrite + " widgets",
+                    output.widgetsBeforeFirstWrite < 200);
+        }
+    }
+
+    /**
+     * A writer that built the whole response in memory would allocate at least the response,
+     * so with a warm cache a response must allocate well under its own size, at any board size.
+     */
+    @Test
+    public void testAllocationPerWidgetStaysFlatAsBoardGrows() throws IOException {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+        WidgetsSnapshot smallBoard = board(10_000), largeBoard = board(100_000);
+        WidgetsJsonWriter cachingWriter = new WidgetsJsonWriter(
+                new WidgetJsonCache(objectMapper, 64 * 1024 * 1024, WidgetJsonCache.Eviction.LRU));
+
+        for (int i = 0; i < 3; i++) {
+            allocatedBytes(cachingWriter, smallBoard);
+            allocatedBytes(cachingWriter, largeBoard);
+        }
+
+        for (WidgetsSnapshot board : new WidgetsSnapshot[]{smallBoard, largeBoard}) {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            cachingWriter.writeLines(board.getWidgets(), response);
+            long allocated = allocatedBytes(cachingWriter, board);
+
+            assertTrue(allocated + " bytes allocated for a " + response.size() + " byte response",
+                    allocated < response.size() / 2);
+        }
+    }
+
+    /**
+     * Once the cache holds the board, a response copies bytes instead of serializing widgets.
+     */
+    @Test
+    public void testWarmCacheAllocatesLittlePerWidget() throws IOException {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+        WidgetsSnapshot board = board(10_000);
+        WidgetsJsonWriter cachingWriter = new WidgetsJsonWriter(
+                new WidgetJsonCache(objectMapper, 64 * 1024 * 1024, WidgetJsonCache.Eviction.LRU));
+
+        for (int i = 0; i < 3; i++) {
+            allocatedBytes(writer, board);
+            allocatedBytes(cachingWriter, board);
+        }
+
+        double uncachedBytesPerWidget = (double) allocatedBytes(writer, board) / board.size();
+        double cachedBytesPerWidget = (double) allocatedBytes(cachingWriter, board) / board.size();
+
+        assertTrue(uncachedBytesPerWidget + " vs " + cachedBytesPerWidget + " bytes per widget",
+                cachedBytesPerWidget < 64 && cachedBytesPerWidget * 4 < uncachedBytesPerWidget);
+    }
+
+    private static long allocatedBytes(WidgetsJsonWriter writer, WidgetsSnapshot snapshot) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        writer.writeLines(snapshot.getWidgets(), discard);
+
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private static WidgetsSnapshot board(int size) {
+        List<Widget> widgets = new ArrayList<>(size);
+
+        for (int z = 0; z < size; z++) {
+            widgets.add(new Widget(WidgetIdGenerator.UUIDS.nextId(), z, -z, z, 100, 50));
+        }
+
+        return WidgetsSnapshot.of(widgets);
+    }
+
+    private static class CountingIterable implements Iterable<Widget> {
+        private final Iterable<Widget> widgets;
+        private int count;
+
+        CountingIterable(Iterable<Widget> widgets) {
+            this.widgets = widgets;
+        }
+
+        @Override
+        public Iterator<Widget> iterator() {
+            Iterator<Widget> iterator = widgets.iterator();
+
+            return new Iterator<Widget>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Widget next() {
+                    count++;
+                    return iterator.next();
+                }
+            };
+        }
+    }
+
+    private static class RecordingOutputStream extends OutputStream {
+        private final CountingIterable widgets;
+        private int largestWrite;
+        private int widgetsBeforeFirstWrite = -1;
+
+        RecordingOutputStream(CountingIterable widgets) {
+            this.widgets = widgets;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (widgetsBeforeFirstWrite < 0) {
+                widgetsBeforeFirstWrite = widgets.count;
+            }
+
+            largestWrite = Math.max(largestWrite, len);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.miro.board.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * A full-board response is smaller in CBOR than in JSON and carries the same document.
+ * Serialization times are measured by {@code WidgetsWireFormatBenchmark} in the benchmarks project.
+ */
+public class WidgetsWireFormatTest {
+    private final ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+
+    @Test
+    public void testCborIsSmallerThanJson() throws IOException {
+        for (int size : new int[]{1_000, 100_000}) {
+            List<Widget> widgets = board(size);
+            byte[] json = jsonMapper.writeValueAsBytes(widgets);
+            byte[] cbor = cborMapper.writeValueAsBytes(widgets);
+
+            assertTrue(cbor.length + " vs " + json.length + " bytes", cbor.length < json.length);
+            assertEquals(jsonMapper.readTree(json), cborMapper.readTree(cbor));
+        }
+    }
+
+    private static List<Widget> board(int size) {
+        Random random = new Random(17);
+        List<Widget> widgets = new ArrayList<>(size);
+
+        for (int z = 0; z < size; z++) {
+            widgets.add(new Widget(WidgetIdGenerator.UUIDS.nextId(), random.nextInt(1_000_000), random.nextInt(1_000_000), z,
+                    1_000 + random.nextInt(1_000), 1_000 + random.nextInt(1_000)));
+        }
+
+        return widgets;
+    }
+}
@@ -0,0 +1,68 @@
+package com.miro.board.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class SnowflakeIdGeneratorTest {
+    @Test
+    public void testIdsIncreaseAsStringsAndNumbers() {
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(5);
+        String previous = idGenerator.nextId();
+
+        for (int i = 0; i < 100_000; i++) {
+            String id = idGenerator.nextId();
+
+            assertEquals(16, id.length());
+            assertTrue(id.compareTo(previous) > 0);
+            assertTrue(Long.parseUnsignedLong(id, 16) > Long.parseUnsignedLong(previous, 16));
+            previous = id;
+        }
+    }
+
+    @Test
+    public void testIdHoldsTimeAndNode() {
+        long before = System.currentTimeMillis();
+        long id = new SnowflakeIdGenerator(1023).nextLong();
+
+        assertEquals(1023, (id >>> 12) & 1023);
+        assertTrue((id >>> 22) + SnowflakeIdGenerator.EPOCH_MILLIS >= before);
+        assertTrue((id >>> 22) + SnowflakeIdGenerator.EPOCH_MILLIS <= System.currentTimeMillis() + 1);
+    }
+
+    @Test
+    public void testConcurrentIdsAreUnique() throws Exception {
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        ConcurrentHashMap<String, Boolean> ids = new ConcurrentHashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 20_000; j++) {
+                    assertNull(ids.put(idGenerator.nextId(), true));
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        executor.shutdown();
+
+        assertEquals(160_000, ids.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeOutOfRange() {
+        new SnowflakeIdGenerator(1024);
+    }
+}
@@ -0,0 +1,43 @@
+package com.miro.board.model;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class WidgetIdsTest {
+    @Test
+    public void testSnowflakeIdKeyRoundTrip() {
+        String id = new SnowflakeIdGenerator(3).nextId();
+        UUID key = WidgetIds.toKey(id);
+
+        assertEquals(0, key.getMostSignificantBits());
+        assertEquals(id, WidgetIds.fromKey(key.getMostSignificantBits(), key.getLeastSignificantBits()));
+    }
+
+    @Test
+    public void testUuidKeyRoundTrip() {
+        String id = UUID.randomUUID().toString();
+        UUID key = WidgetIds.toKey(id);
+
+        assertNotEquals(0, key.getMostSignificantBits());
+        assertEquals(id, WidgetIds.fromKey(key.getMostSignificantBits(), key.getLeastSignificantBits()));
+    }
+
+    @Test
+    public void testOtherIdsHaveNoKey() {
+        assertNull(WidgetIds.toKey("missing"));
+        assertNull(WidgetIds.toKey("00B5C1F3E2401000"));
+        assertNull(WidgetIds.toKey("zzzzzzzzzzzzzzzz"));
+        assertNull(WidgetIds.toKey("zzzzzzzz-zzzz-zzzz-zzzz-zzzzzzzzzzzz"));
+    }
+
+    @Test
+    public void testOnlyCanonicalUuidsHaveKeys() {
+        String id = UUID.randomUUID().toString();
+
+        assertNull(WidgetIds.toKey(id.toUpperCase()));
+        assertNull(WidgetIds.toKey("00000000-0000-0000-00b5-c1f3e2401000"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.miro.board.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WidgetsChangesTest {
+    @Test
+    public void testLaterStateOfWidgetWins() {
+        Widget widget = new Widget("a", 0, 0, 1, 5, 5);
+        Widget moved = new Widget("a", 9, 9, 1, 5, 5);
+        Widget pushed = new Widget("b", 0, 0, 2, 5, 5);
+
+        WidgetsChanges changes = changes(1, list(widget), list(), list(pushed))
+                .followedBy(changes(2, list(), list(moved, new Widget("b", 3, 3, 3, 5, 5)), list()));
+
+        assertEquals(2, changes.getVersion());
+        assertSame(moved, changes.getCreated().get(0));
+        assertEquals(1, changes.getCreated().size());
+        assertEquals("b", changes.getUpdated().get(0).getId());
+        assertTrue(changes.getShifted().isEmpty());
+    }
+
+    @Test
+    public void testWidgetCreatedThenDeletedIsLeftOut() {
+        WidgetsChanges changes = changes(1, list(new Widget("a", 0, 0, 1, 5, 5)), list(), list())
+                .followedBy(changes(2, list(), list(), list(), "a"));
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void testDeleteReplacesEarlierUpdate() {
+        WidgetsChanges changes = changes(1, list(), list(new Widget("a", 0, 0, 1, 5, 5)), list())
+                .followedBy(changes(2, list(), list(), list(), "a"));
+
+        assertTrue(changes.getUpdated().isEmpty());
+        assertEquals(Collections.singletonList("a"), changes.getDeleted());
+    }
+
+    @Test
+    public void testChangesAreAppliedToResync() {
+        WidgetsChanges changes = WidgetsChanges.resync(1, list(new Widget("a", 0, 0, 1, 5, 5),
+                new Widget("b", 0, 0, 2, 5, 5)))
+                .followedBy(changes(2, list(new Widget("c", 0, 0, 1, 5, 5)), list(),
+                        list(new Widget("a", 0, 0, 2, 5, 5), new Widget("b", 0, 0, 3, 5, 5))))
+                .followedBy(changes(3, list(), list(), list(), "b"));
+
+        assertTrue(changes.isResync());
+        assertEquals(3, changes.getVersion());
+        assertEquals(2, changes.getCreated().size());
+        assertEquals("c", changes.getCreated().get(0).getId());
+        assertEquals(Integer.valueOf(2), changes.getCreated().get(1).getZ());
+        assertTrue(changes.getDeleted().isEmpty());
+    }
+
+    @Test
+    public void testResyncReplacesEarlierChanges() {
+        WidgetsChanges resync = WidgetsChanges.resync(2, list());
+
+        assertSame(resync, changes(1, list(), list(), list(), "a").followedBy(resync));
+    }
+
+    private static WidgetsChanges changes(long version, List<Widget> created, List<Widget> updated,
+                                          List<Widget> shifted, String... deleted) {
+        return new WidgetsChanges(version, false, created, updated, shifted, Arrays.asList(deleted));
+    }
+
+    private static List<Widget> list(Widget... widgets) {
+        return Arrays.asList(widgets);
+    }
+}
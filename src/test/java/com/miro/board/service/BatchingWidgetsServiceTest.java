@@ -0,0 +1,85 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BatchingWidgetsServiceTest extends DefaultWidgetsServiceTest {
+    @Before
+    @Override
+    public void flushDefaultWidgetsServiceStorage() {
+        widgetsService = new BatchingWidgetsService();
+    }
+
+    @After
+    public void closeWidgetsService() {
+        ((BatchingWidgetsService) widgetsService).close();
+    }
+
+    @Test
+    public void testConcurrentCreatesOnTopGetDistinctZ() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Widget>> creates = new ArrayList<>();
+
+        for (int i = 0; i < 1_000; i++) {
+            creates.add(() -> widgetsService.createWidget(new WidgetDTO(1, 2, null, 5, 10)));
+        }
+
+        Set<Integer> zs = new HashSet<>();
+
+        for (Future<Widget> widget : executor.invokeAll(creates)) {
+            zs.add(widget.get().getZ());
+        }
+
+        executor.shutdown();
+
+        assertEquals(1_000, zs.size());
+        assertEquals(1_000, widgetsService.getWidgets().size());
+        assertTrue(zs.contains(1));
+        assertTrue(zs.contains(1_000));
+    }
+
+    @Test
+    public void testWritesRacingCloseNeverHang() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            BatchingWidgetsService board = new BatchingWidgetsService(4);
+            ExecutorService writers = Executors.newFixedThreadPool(8);
+            List<Future<?>> results = new ArrayList<>();
+
+            for (int i = 0; i < 8; i++) {
+                results.add(writers.submit(() -> {
+                    try {
+                        while (true) {
+                            board.createWidget(new WidgetDTO(1, 2, null, 5, 10));
+                        }
+                    } catch (IllegalStateException ex) {
+                        // Closed
+                    }
+                }));
+            }
+
+            Thread.sleep(5);
+            board.close();
+
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+
+            writers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.miro.board.service;
+
+import org.junit.Before;
+
+public class ColumnarWidgetsServiceTest extends DefaultWidgetsServiceTest {
+    @Before
+    @Override
+    public void flushDefaultWidgetsServiceStorage() {
+        widgetsService = new ColumnarWidgetsService();
+    }
+}
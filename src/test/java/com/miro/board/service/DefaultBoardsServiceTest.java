@@ -0,0 +1,135 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.exception.BoardNotFoundException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class DefaultBoardsServiceTest {
+    @Test
+    public void testDefaultBoardIsRegistered() {
+        WidgetsService defaultBoard = new DefaultWidgetsService();
+        BoardsService boardsService = new DefaultBoardsService(defaultBoard, boardId -> new DefaultWidgetsService());
+
+        assertSame(defaultBoard, boardsService.getBoard(DefaultBoardsService.DEFAULT_BOARD_ID));
+    }
+
+    @Test
+    public void testSameBoardIsReturnedForSameId() {
+        BoardsService boardsService = new DefaultBoardsService(new DefaultWidgetsService(), boardId -> new DefaultWidgetsService());
+
+        assertSame(boardsService.getOrCreateBoard("board"), boardsService.getOrCreateBoard("board"));
+        assertSame(boardsService.getOrCreateBoard("board"), boardsService.getBoard("board"));
+    }
+
+    @Test
+    public void testBoardsDoNotShareWidgets() {
+        BoardsService boardsService = new DefaultBoardsService(new DefaultWidgetsService(), boardId -> new DefaultWidgetsService());
+
+        Widget widget = boardsService.getOrCreateBoard("board1").createWidget(new WidgetDTO(1, 2, null, 5, 10));
+        Widget otherWidget = boardsService.getOrCreateBoard("board2").createWidget(new WidgetDTO(1, 2, null, 5, 10));
+
+        assertEquals(Integer.valueOf(1), widget.getZ());
+        assertEquals(Integer.valueOf(1), otherWidget.getZ());
+        assertEquals(1, boardsService.getBoard("board1").getWidgets().size());
+        assertEquals(1, boardsService.getBoard("board2").getWidgets().size());
+        assertTrue(boardsService.getBoard(DefaultBoardsService.DEFAULT_BOARD_ID).getWidgets().isEmpty());
+    }
+
+    @Test
+    public void testReadOfUnknownBoardCreatesNothing() {
+        List<ClosableBoard> opened = new ArrayList<>();
+        DefaultBoardsService boardsService = new DefaultBoardsService(new DefaultWidgetsService(), opener(opened));
+
+        try {
+            boardsService.getBoard("board");
+            fail();
+        } catch (BoardNotFoundException ex) {
+            assertTrue(opened.isEmpty());
+            assertEquals(1, boardsService.openBoards());
+        }
+    }
+
+    @Test
+    public void testReadOpensStoredBoard() {
+        List<ClosableBoard> opened = new ArrayList<>();
+        DefaultBoardsService boardsService = new DefaultBoardsService(new DefaultWidgetsService(), opener(opened),
+                "stored"::equals, board -> false, 60_000);
+
+        WidgetsService board = boardsService.getBoard("stored");
+
+        assertSame(opened.get(0), board);
+
+        boardsService.close();
+        assertTrue(opened.get(0).closed);
+    }
+
+    @Test
+    public void testIdleStoredBoardIsClosedAndReopened() throws InterruptedException {
+        List<ClosableBoard> opened = new ArrayList<>();
+        DefaultBoardsService boardsService = new DefaultBoardsService(new DefaultWidgetsService(), opener(opened),
+                "board"::equals, board -> false, 60_000);
+        boardsService.getOrCreateBoard("board");
+
+        boardsService.closeIdleBoards();
+        assertFalse(opened.get(0).closed);
+
+        DefaultBoardsService idleBoardsService = new DefaultBoardsService(new DefaultWidgetsService(), opener(opened),
+                "board"::equals, board -> false, 1);
+        idleBoardsService.getOrCreateBoard("board");
+        Thread.sleep(10);
+        idleBoardsService.closeIdleBoards();
+
+        assertTrue(opened.get(1).closed);
+        assertEquals(1, idleBoardsService.openBoards());
+
+        WidgetsService reopened = idleBoardsService.getBoard("board");
+
+        assertSame(opened.get(2), reopened);
+
+        boardsService.close();
+        idleBoardsService.close();
+    }
+
+    @Test
+    public void testBusyBoardIsNotClosed() throws InterruptedException {
+        List<ClosableBoard> opened = new ArrayList<>();
+        DefaultBoardsService boardsService = new DefaultBoardsService(new DefaultWidgetsService(), opener(opened),
+                "board"::equals, board -> true, 1);
+        boardsService.getOrCreateBoard("board");
+        Thread.sleep(10);
+        boardsService.closeIdleBoards();
+
+        assertFalse(opened.get(0).closed);
+        assertSame(opened.get(0), boardsService.getBoard("board"));
+
+        boardsService.close();
+    }
+
+    private static Function<String, WidgetsService> opener(List<ClosableBoard> opened) {
+        return boardId -> {
+            ClosableBoard board = new ClosableBoard();
+
+            synchronized (opened) {
+                opened.add(board);
+            }
+
+            return board;
+        };
+    }
+
+    private static final class ClosableBoard extends DefaultWidgetsService implements AutoCloseable {
+        private volatile boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -1,41 +1,37 @@
 package com.miro.board.service;
 
+import com.miro.board.model.Area;
 import com.miro.board.model.Widget;
 import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetOperation;
+import com.miro.board.model.WidgetsChanges;
+import com.miro.board.model.WidgetsCursor;
+import com.miro.board.model.WidgetsPage;
+import com.miro.board.model.exception.InvalidBatchException;
 import com.miro.board.model.exception.WidgetNotFoundException;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest
 public class DefaultWidgetsServiceTest {
-    @Autowired
-    private WidgetsService widgetsService;
+    protected WidgetsService widgetsService;
 
     @Before
-    public void flushDefaultWidgetsServiceStorage() throws NoSuchFieldException, IllegalAccessException {
-        Field widgetsField = DefaultWidgetsService.class.getDeclaredField("widgets");
-        widgetsField.setAccessible(true);
-
-        Field modifiers = Field.class.getDeclaredField("modifiers");
-        modifiers.setAccessible(true);
-        modifiers.setInt(widgetsField, widgetsField.getModifiers() & ~Modifier.FINAL);
-
-        widgetsField.set(null, new AtomicReference<>(Collections.unmodifiableMap(new LinkedHashMap<>())));
+    public void flushDefaultWidgetsServiceStorage() {
+        widgetsService = new DefaultWidgetsService();
     }
 
     //GET
@@ -91,6 +87,80 @@ public class DefaultWidgetsServiceTest {
         widgetsService.getWidget("1");
     }
 
+    @Test
+    public void testGetWidgetsInArea() {
+        Widget widget1 = widgetsService.createWidget(new WidgetDTO(0, 0, null, 100, 100));
+        Widget widget2 = widgetsService.createWidget(new WidgetDTO(0, 50, null, 100, 100));
+        widgetsService.createWidget(new WidgetDTO(50, 50, null, 100, 100));
+
+        Collection<Widget> actualWidgets = widgetsService.getWidgets(new Area(0, 0, 100, 150));
+
+        assertEquals(2, actualWidgets.size());
+
+        Iterator<Widget> widgetIterator = actualWidgets.iterator();
+        assertEquals(widget1.getId(), widgetIterator.next().getId());
+        assertEquals(widget2.getId(), widgetIterator.next().getId());
+    }
+
+    @Test
+    public void testGetWidgetsInAreaAfterUpdate() {
+        Widget widget = widgetsService.createWidget(new WidgetDTO(0, 0, null, 100, 100));
+        widgetsService.updateWidget(widget.getId(), new WidgetDTO(500, 500, null, 100, 100));
+
+        assertTrue(widgetsService.getWidgets(new Area(0, 0, 100, 100)).isEmpty());
+        assertEquals(1, widgetsService.getWidgets(new Area(500, 500, 600, 600)).size());
+    }
+
+    @Test
+    public void testGetWidgetsPageByPage() {
+        for (int z = 1; z <= 5; z++) {
+            widgetsService.createWidget(new WidgetDTO(1, 2, z * 2, 5, 10));
+        }
+
+        WidgetsPage page1 = widgetsService.getWidgets(null, 2);
+        assertEquals(2, page1.getWidgets().size());
+        assertEquals(Integer.valueOf(2), page1.getWidgets().get(0).getZ());
+        assertEquals(Integer.valueOf(4), page1.getWidgets().get(1).getZ());
+        assertNotNull(page1.getNext());
+
+        WidgetsPage page2 = widgetsService.getWidgets(WidgetsCursor.decode(page1.getNext()), 2);
+        assertEquals(Integer.valueOf(6), page2.getWidgets().get(0).getZ());
+        assertEquals(Integer.valueOf(8), page2.getWidgets().get(1).getZ());
+        assertNotNull(page2.getNext());
+
+        WidgetsPage page3 = widgetsService.getWidgets(WidgetsCursor.decode(page2.getNext()), 2);
+        assertEquals(1, page3.getWidgets().size());
+        assertEquals(Integer.valueOf(10), page3.getWidgets().get(0).getZ());
+        assertNull(page3.getNext());
+    }
+
+    @Test
+    public void testPageAfterShiftNeitherSkipsNorRepeats() {
+        List<Widget> widgets = new ArrayList<>();
+
+        for (int z = 1; z <= 4; z++) {
+            widgets.add(widgetsService.createWidget(new WidgetDTO(1, 2, z, 5, 10)));
+        }
+
+        WidgetsPage page1 = widgetsService.getWidgets(null, 2);
+        widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        WidgetsPage page2 = widgetsService.getWidgets(WidgetsCursor.decode(page1.getNext()), 2);
+
+        assertEquals(widgets.get(2).getId(), page2.getWidgets().get(0).getId());
+        assertEquals(widgets.get(3).getId(), page2.getWidgets().get(1).getId());
+        assertNull(page2.getNext());
+    }
+
+    @Test
+    public void testGetWidgetsPageAfterLastWidget() {
+        Widget widget = widgetsService.createWidget(new WidgetDTO(1, 2, Integer.MAX_VALUE, 5, 10));
+
+        WidgetsPage page = widgetsService.getWidgets(WidgetsCursor.after(widget), 10);
+
+        assertTrue(page.getWidgets().isEmpty());
+        assertNull(page.getNext());
+    }
+
     //POST
 
     @Test
@@ -434,4 +504,164 @@ public class DefaultWidgetsServiceTest {
     public void testDeleteNonExistingWidget() {
         widgetsService.deleteWidget("1");
     }
+
+    @Test
+    public void testWidgetWithIdLongerThanAnyGeneratedIdIsNotFound() {
+        String id = String.join("", Collections.nCopies(5, "0123456789"));
+        widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+
+        for (Runnable action : Arrays.<Runnable>asList(
+                () -> widgetsService.getWidget(id),
+                () -> widgetsService.updateWidget(id, new WidgetDTO(1, 2, 1, 5, 10)),
+                () -> widgetsService.deleteWidget(id))) {
+            try {
+                action.run();
+                fail();
+            } catch (WidgetNotFoundException ex) {
+                assertEquals(1, widgetsService.getWidgets().size());
+            }
+        }
+    }
+
+    //BATCH
+
+    @Test
+    public void testApplyBatchInOrder() {
+        Widget widget1 = widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        Widget widget2 = widgetsService.createWidget(new WidgetDTO(1, 2, 2, 5, 10));
+
+        List<Widget> results = widgetsService.applyBatch(Arrays.asList(
+                new WidgetOperation(WidgetOperation.Type.CREATE, null, new WidgetDTO(3, 4, 1, 5, 10)),
+                new WidgetOperation(WidgetOperation.Type.UPDATE, widget2.getId(), new WidgetDTO(7, 8, null, 5, 10)),
+                new WidgetOperation(WidgetOperation.Type.DELETE, widget1.getId(), null)));
+
+        assertEquals(3, results.size());
+        assertEquals(1, results.get(0).getZ().intValue());
+        assertEquals(3, results.get(1).getZ().intValue());
+        assertEquals(widget1.getId(), results.get(2).getId());
+
+        Collection<Widget> actualWidgets = widgetsService.getWidgets();
+
+        assertEquals(2, actualWidgets.size());
+
+        Iterator<Widget> widgetIterator = actualWidgets.iterator();
+
+        Widget actualWidget1 = widgetIterator.next();
+        assertEquals(results.get(0).getId(), actualWidget1.getId());
+        assertEquals(1, actualWidget1.getZ().intValue());
+
+        Widget actualWidget2 = widgetIterator.next();
+        assertEquals(widget2.getId(), actualWidget2.getId());
+        assertEquals(7, actualWidget2.getX().intValue());
+        assertEquals(3, actualWidget2.getZ().intValue());
+    }
+
+    @Test
+    public void testApplyBatchIsAllOrNothing() {
+        Widget widget = widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+
+        try {
+            widgetsService.applyBatch(Arrays.asList(
+                    new WidgetOperation(WidgetOperation.Type.CREATE, null, new WidgetDTO(3, 4, 1, 5, 10)),
+                    new WidgetOperation(WidgetOperation.Type.DELETE, widget.getId(), null),
+                    new WidgetOperation(WidgetOperation.Type.UPDATE, "1", new WidgetDTO(7, 8, 2, 5, 10))));
+            fail();
+        } catch (WidgetNotFoundException ex) {
+            assertEquals(1, widgetsService.getWidgets().size());
+
+            Widget actualWidget = widgetsService.getWidget(widget.getId());
+            assertEquals(widget.getLastModified(), actualWidget.getLastModified());
+            assertEquals(1, actualWidget.getZ().intValue());
+        }
+    }
+
+    @Test(expected = InvalidBatchException.class)
+    public void testApplyBatchWithoutWidgetForCreate() {
+        widgetsService.applyBatch(Arrays.asList(
+                new WidgetOperation(WidgetOperation.Type.CREATE, null, null)));
+    }
+
+    @Test
+    public void testApplyBatchCreateWithExistingIdDoesNotReplaceWidget() {
+        Widget widget = widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        widgetsService.createWidget(new WidgetDTO(1, 2, 2, 5, 10));
+
+        try {
+            widgetsService.applyBatch(Arrays.asList(
+                    new WidgetOperation(WidgetOperation.Type.CREATE, widget.getId(), new WidgetDTO(9, 9, 1, 5, 10))));
+            fail();
+        } catch (InvalidBatchException ex) {
+            assertEquals(2, widgetsService.getWidgets().size());
+
+            Widget actualWidget = widgetsService.getWidget(widget.getId());
+            assertEquals(1, actualWidget.getX().intValue());
+            assertEquals(widget.getLastModified(), actualWidget.getLastModified());
+        }
+    }
+
+    //VERSION
+
+    @Test
+    public void testEveryChangeAdvancesVersion() {
+        long version = widgetsService.getVersion();
+
+        Widget widget = widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        version = assertVersionAdvanced(version);
+
+        widgetsService.updateWidget(widget.getId(), new WidgetDTO(3, 4, 1, 5, 10));
+        version = assertVersionAdvanced(version);
+
+        widgetsService.applyBatch(Arrays.asList(
+                new WidgetOperation(WidgetOperation.Type.CREATE, null, new WidgetDTO(1, 2, 1, 5, 10)),
+                new WidgetOperation(WidgetOperation.Type.DELETE, widget.getId(), null)));
+        version = assertVersionAdvanced(version);
+
+        try {
+            widgetsService.deleteWidget(widget.getId());
+            fail();
+        } catch (WidgetNotFoundException ex) {
+            assertEquals(version, widgetsService.getVersion());
+        }
+
+        widgetsService.getWidgets();
+        assertEquals(version, widgetsService.getVersion());
+    }
+
+    @Test
+    public void testChangesSinceVersionHoldEveryChangedWidget() {
+        Widget bottom = widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        Widget pushed = widgetsService.createWidget(new WidgetDTO(1, 2, 2, 5, 10));
+        Widget deleted = widgetsService.createWidget(new WidgetDTO(1, 2, 10, 5, 10));
+        long version = widgetsService.getVersion();
+
+        List<Widget> results = widgetsService.applyBatch(Arrays.asList(
+                new WidgetOperation(WidgetOperation.Type.CREATE, null, new WidgetDTO(1, 2, 2, 5, 10)),
+                new WidgetOperation(WidgetOperation.Type.DELETE, deleted.getId(), null)));
+
+        WidgetsChanges changes = widgetsService.getChanges(version);
+
+        if (changes.isResync()) {
+            assertEquals(3, changes.getCreated().size());
+            return;
+        }
+
+        assertEquals(widgetsService.getVersion(), changes.getVersion());
+        assertEquals(1, changes.getCreated().size());
+        assertEquals(results.get(0).getId(), changes.getCreated().get(0).getId());
+        assertEquals(1, changes.getShifted().size());
+        assertEquals(pushed.getId(), changes.getShifted().get(0).getId());
+        assertEquals(Integer.valueOf(3), changes.getShifted().get(0).getZ());
+        assertTrue(changes.getUpdated().isEmpty());
+        assertEquals(Arrays.asList(deleted.getId()), changes.getDeleted());
+        assertNotEquals(bottom.getId(), changes.getShifted().get(0).getId());
+
+        assertTrue(widgetsService.getChanges(changes.getVersion()).isEmpty());
+    }
+
+    private long assertVersionAdvanced(long previousVersion) {
+        long version = widgetsService.getVersion();
+        assertTrue(version + " after " + previousVersion, version > previousVersion);
+
+        return version;
+    }
 }
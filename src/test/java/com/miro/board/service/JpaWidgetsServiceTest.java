@@ -0,0 +1,124 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.repository.BoardsRepository;
+import com.miro.board.repository.WidgetsRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+@AutoConfigureDataJpa
+public class JpaWidgetsServiceTest extends DefaultWidgetsServiceTest {
+    @Autowired
+    private BoardsRepository boardsRepository;
+
+    @Autowired
+    private WidgetsRepository widgetsRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Before
+    @Override
+    public void flushDefaultWidgetsServiceStorage() {
+        widgetsRepository.deleteAll();
+        boardsRepository.deleteAll();
+        widgetsService = createBoard("board");
+    }
+
+    @Test
+    public void testWidgetsSurviveServiceRestart() {
+        Widget widget = widgetsService.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+
+        Widget actualWidget = createBoard("board").getWidget(widget.getId());
+
+        assertEquals(widget.getZ(), actualWidget.getZ());
+        assertEquals(widget.getLastModified(), actualWidget.getLastModified());
+    }
+
+    @Test
+    public void testCollisionShiftsOnlyContiguousRun() {
+        for (int z : new int[]{1, 2, 3, 5}) {
+            widgetsService.createWidget(new WidgetDTO(1, 2, z, 5, 10));
+        }
+
+        widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+
+        Iterator<Widget> widgetIterator = widgetsService.getWidgets().iterator();
+
+        for (int z : new int[]{1, 2, 3, 4, 5}) {
+            assertEquals(Integer.valueOf(z), widgetIterator.next().getZ());
+        }
+
+        assertFalse(widgetIterator.hasNext());
+    }
+
+    @Test
+    public void testBoardsDoNotShareRows() {
+        widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+
+        WidgetsService otherBoard = createBoard("other");
+        Widget widget = otherBoard.createWidget(new WidgetDTO(1, 2, null, 5, 10));
+
+        assertEquals(Integer.valueOf(1), widget.getZ());
+        assertEquals(1, otherBoard.getWidgets().size());
+        assertEquals(1, widgetsService.getWidgets().size());
+    }
+
+    @Test
+    public void testServicesOfOneBoardSerializeWrites() throws Exception {
+        WidgetsService reopenedBoard = createBoard("board");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Widget>> creates = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            WidgetsService board = i % 2 == 0 ? widgetsService : reopenedBoard;
+            creates.add(() -> board.createWidget(new WidgetDTO(1, 2, 1, 5, 10)));
+        }
+
+        for (Future<Widget> widget : executor.invokeAll(creates)) {
+            widget.get();
+        }
+
+        executor.shutdown();
+
+        Set<Integer> zs = new HashSet<>();
+
+        for (Widget widget : widgetsService.getWidgets()) {
+            zs.add(widget.getZ());
+        }
+
+        assertEquals(200, zs.size());
+        assertTrue(zs.contains(1));
+        assertTrue(zs.contains(200));
+    }
+
+    @Test
+    @Override
+    public void testEveryChangeAdvancesVersion() {
+        widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+
+        assertEquals(-1, widgetsService.getVersion());
+    }
+
+    private WidgetsService createBoard(String boardId) {
+        return new JpaWidgetsService(boardId, boardsRepository, widgetsRepository,
+                new TransactionTemplate(transactionManager));
+    }
+}
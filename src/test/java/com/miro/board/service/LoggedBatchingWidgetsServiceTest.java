@@ -0,0 +1,134 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.storage.FsyncPolicy;
+import com.miro.board.storage.WidgetsLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class LoggedBatchingWidgetsServiceTest extends DefaultWidgetsServiceTest {
+    private Path directory;
+
+    @Before
+    @Override
+    public void flushDefaultWidgetsServiceStorage() {
+        try {
+            directory = Files.createTempDirectory("widgets-log");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        widgetsService = open(FsyncPolicy.PER_BATCH, 1_000);
+    }
+
+    @After
+    public void deleteLog() throws IOException {
+        ((BatchingWidgetsService) widgetsService).close();
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testBoardIsRecoveredAfterRestart() {
+        Widget widget1 = widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        Widget widget2 = widgetsService.createWidget(new WidgetDTO(1, 2, 2, 5, 10));
+        widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        widgetsService.deleteWidget(widget2.getId());
+
+        List<Widget> expected = new ArrayList<>(widgetsService.getWidgets());
+
+        restart(FsyncPolicy.PER_WRITE, 1_000);
+
+        assertSameWidgets(expected, new ArrayList<>(widgetsService.getWidgets()));
+        assertEquals(Integer.valueOf(2), widgetsService.getWidget(widget1.getId()).getZ());
+    }
+
+    @Test
+    public void testVersionSurvivesRestart() {
+        restart(FsyncPolicy.PER_BATCH, 10);
+
+        for (int i = 0; i < 25; i++) {
+            widgetsService.createWidget(new WidgetDTO(i, i, 1, 5, 10));
+        }
+
+        long version = widgetsService.getVersion();
+
+        restart(FsyncPolicy.PER_BATCH, 10);
+
+        assertEquals(version, widgetsService.getVersion());
+    }
+
+    @Test
+    public void testBoardIsRecoveredFromSnapshotAndLogTail() {
+        restart(FsyncPolicy.INTERVAL, 10);
+
+        for (int i = 0; i < 95; i++) {
+            widgetsService.createWidget(new WidgetDTO(i, i, i % 7, 5, 10));
+        }
+
+        List<Widget> expected = new ArrayList<>(widgetsService.getWidgets());
+
+        restart(FsyncPolicy.PER_BATCH, 10);
+
+        assertSameWidgets(expected, new ArrayList<>(widgetsService.getWidgets()));
+    }
+
+    @Test
+    public void testCleanShutdownLeavesOnlySnapshot() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            widgetsService.createWidget(new WidgetDTO(i, i, 1, 5, 10));
+        }
+
+        List<Widget> expected = new ArrayList<>(widgetsService.getWidgets());
+
+        ((BatchingWidgetsService) widgetsService).close();
+        WidgetsLog log = WidgetsLog.open(directory, FsyncPolicy.PER_BATCH, 10, 1_000);
+
+        assertNotNull(log.mapSnapshot());
+
+        widgetsService = new BatchingWidgetsService(log);
+
+        assertSameWidgets(expected, new ArrayList<>(widgetsService.getWidgets()));
+        assertEquals(expected.get(3).getX(), widgetsService.getWidget(expected.get(3).getId()).getX());
+
+        Widget widget = widgetsService.createWidget(new WidgetDTO(0, 0, 1, 5, 10));
+
+        assertEquals(21, widgetsService.getWidgets().size());
+        assertEquals(Integer.valueOf(1), widgetsService.getWidget(widget.getId()).getZ());
+    }
+
+    private WidgetsService open(FsyncPolicy fsyncPolicy, int snapshotThreshold) {
+        return new BatchingWidgetsService(WidgetsLog.open(directory, fsyncPolicy, 10, snapshotThreshold));
+    }
+
+    private void restart(FsyncPolicy fsyncPolicy, int snapshotThreshold) {
+        ((BatchingWidgetsService) widgetsService).close();
+        widgetsService = open(fsyncPolicy, snapshotThreshold);
+    }
+
+    private static void assertSameWidgets(List<Widget> expected, List<Widget> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getX(), actual.get(i).getX());
+            assertEquals(expected.get(i).getZ(), actual.get(i).getZ());
+            assertEquals(expected.get(i).getLastModified(), actual.get(i).getLastModified());
+        }
+    }
+}
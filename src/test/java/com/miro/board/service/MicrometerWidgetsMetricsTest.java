@@ -0,0 +1,85 @@
+package com.miro.board.service;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MicrometerWidgetsMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final WidgetsService widgetsService = new DefaultWidgetsService(
+            new MicrometerWidgetsMetrics(registry, "board-1"));
+
+    @Test
+    public void testWritesAreTimedByOperation() {
+        Widget widget = widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        widgetsService.createWidget(new WidgetDTO(1, 2, 2, 5, 10));
+        widgetsService.updateWidget(widget.getId(), new WidgetDTO(3, 4, 1, 5, 10));
+        widgetsService.deleteWidget(widget.getId());
+
+        assertEquals(2, registry.get("widgets.writes").tags("board", "board-1", "operation", "create").timer().count());
+        assertEquals(1, registry.get("widgets.writes").tags("operation", "update").timer().count());
+        assertEquals(1, registry.get("widgets.writes").tags("operation", "delete").timer().count());
+        assertEquals(0, registry.get("widgets.writes").tags("operation", "batch").timer().count());
+        assertEquals(0, registry.get("widgets.write.retries").tags("operation", "create").counter().count(), 0);
+    }
+
+    @Test
+    public void testShiftedWidgetsAndBoardSizeAreRecorded() {
+        for (int i = 0; i < 4; i++) {
+            widgetsService.createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        }
+
+        assertEquals(4, registry.get("widgets.write.shifted").summary().count());
+        assertEquals(0 + 1 + 2 + 3, registry.get("widgets.write.shifted").summary().totalAmount(), 0);
+        assertEquals(3, registry.get("widgets.write.shifted").summary().max(), 0);
+        assertEquals(4, registry.get("widgets.size").gauge().value(), 0);
+        assertEquals(4, registry.get("widgets.version").gauge().value(), 0);
+    }
+
+    @Test
+    public void testFailedWriteIsNotRecorded() {
+        try {
+            widgetsService.deleteWidget("missing");
+            fail();
+        } catch (RuntimeException ex) {
+            assertEquals(0, registry.get("widgets.writes").tags("operation", "delete").timer().count());
+        }
+    }
+
+    @Test
+    public void testHistogramsAreOptIn() {
+        PrometheusMeterRegistry plainRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        PrometheusMeterRegistry histogramRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+        new DefaultWidgetsService(new MicrometerWidgetsMetrics(plainRegistry, "board-1"))
+                .createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+        new DefaultWidgetsService(new MicrometerWidgetsMetrics(histogramRegistry, "board-1", true))
+                .createWidget(new WidgetDTO(1, 2, 1, 5, 10));
+
+        assertFalse(plainRegistry.scrape().contains("widgets_writes_seconds_bucket"));
+        assertTrue(histogramRegistry.scrape().contains("widgets_writes_seconds_bucket"));
+    }
+
+    @Test
+    public void testOnlyListedBoardsGetMeters() {
+        SimpleMeterRegistry boardsRegistry = new SimpleMeterRegistry();
+        List<String> boards = Collections.singletonList("default");
+
+        assertSame(WidgetsMetrics.NONE, MicrometerWidgetsMetrics.forBoard(boardsRegistry, "other", boards, false));
+        assertSame(WidgetsMetrics.NONE, MicrometerWidgetsMetrics.forBoard(null, "default", boards, false));
+        assertTrue(boardsRegistry.getMeters().isEmpty());
+
+        MicrometerWidgetsMetrics.forBoard(boardsRegistry, "default", boards, false);
+
+        assertNotNull(boardsRegistry.find("widgets.writes").tags("board", "default").timer());
+        assertNull(boardsRegistry.find("widgets.writes").tags("board", "other").timer());
+    }
+}
@@ -0,0 +1,82 @@
+package com.miro.board.service;
+
+import com.miro.board.model.WidgetDTO;
+import com.miro.board.model.WidgetOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OffHeapWidgetsServiceTest extends DefaultWidgetsServiceTest {
+    @Before
+    @Override
+    public void flushDefaultWidgetsServiceStorage() {
+        widgetsService = new OffHeapWidgetsService(16);
+    }
+
+    @After
+    public void closeWidgetsService() throws JMException {
+        ((OffHeapWidgetsService) widgetsService).close();
+    }
+
+    @Test
+    public void testMemoryUsageGrowsWithBoard() {
+        OffHeapWidgetsService offHeapWidgetsService = (OffHeapWidgetsService) widgetsService;
+        long emptyBytes = offHeapWidgetsService.getAllocatedBytes();
+
+        for (int i = 0; i < 100; i++) {
+            widgetsService.createWidget(new WidgetDTO(i, i, null, 5, 10));
+        }
+
+        assertEquals(100, offHeapWidgetsService.getWidgetCount());
+        assertTrue(offHeapWidgetsService.getCapacity() >= 100);
+        assertTrue(offHeapWidgetsService.getAllocatedBytes() > emptyBytes);
+        assertTrue(offHeapWidgetsService.getUsedBytes() <= offHeapWidgetsService.getAllocatedBytes());
+    }
+
+    @Test
+    public void testBatchReservesRoomForItsCreatesUpFront() {
+        OffHeapWidgetsService offHeapWidgetsService = (OffHeapWidgetsService) widgetsService;
+        List<WidgetOperation> operations = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            operations.add(new WidgetOperation(WidgetOperation.Type.CREATE, null, new WidgetDTO(i, i, 1, 5, 10)));
+        }
+
+        widgetsService.applyBatch(operations);
+
+        assertEquals(40, offHeapWidgetsService.getWidgetCount());
+        assertEquals(40, offHeapWidgetsService.getCapacity());
+    }
+
+    @Test
+    public void testMemoryUsageIsPublishedUntilClosed() throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.miro.board:type=OffHeapWidgets,board=test");
+        OffHeapWidgetsService board = new OffHeapWidgetsService();
+        mBeanServer.registerMBean(board, name);
+
+        board.createWidget(new WidgetDTO(1, 2, 3, 5, 10));
+
+        assertEquals(1, mBeanServer.getAttribute(name, "WidgetCount"));
+
+        board.close();
+
+        assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedBoardRejectsReads() throws JMException {
+        ((OffHeapWidgetsService) widgetsService).close();
+
+        widgetsService.getWidgets();
+    }
+}
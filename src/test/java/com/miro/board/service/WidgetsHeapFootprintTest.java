@@ -0,0 +1,39 @@
+package com.miro.board.service;
+
+import com.miro.board.model.WidgetDTO;
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bounds the retained heap per widget, measured with JOL. Widgets are spread over distinct z and
+ * large coordinates, so boxed values are not served from the {@code Integer} cache. The benchmarks
+ * project has {@code HeapFootprintReport} for the full breakdown.
+ */
+public class WidgetsHeapFootprintTest {
+    private static final int BOARD_SIZE = 20_000;
+
+    @Test
+    public void testColumnarEngineUsesLessHeapPerWidget() {
+        long snapshotBytes = bytesPerWidget(new DefaultWidgetsService());
+        long columnarBytes = bytesPerWidget(new ColumnarWidgetsService());
+
+        assertTrue(columnarBytes + " bytes per widget", columnarBytes < 100);
+        assertTrue(columnarBytes + " vs " + snapshotBytes + " bytes per widget", columnarBytes * 4 < snapshotBytes);
+    }
+
+    private static long bytesPerWidget(WidgetsService widgetsService) {
+        Random random = new Random(17);
+        long emptyBytes = GraphLayout.parseInstance(widgetsService).totalSize();
+
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            widgetsService.createWidget(new WidgetDTO(random.nextInt(1_000_000), random.nextInt(1_000_000),
+                    null, 1_000 + random.nextInt(1_000), 1_000 + random.nextInt(1_000)));
+        }
+
+        return (GraphLayout.parseInstance(widgetsService).totalSize() - emptyBytes) / BOARD_SIZE;
+    }
+}
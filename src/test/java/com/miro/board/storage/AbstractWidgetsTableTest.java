@@ -0,0 +1,123 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.SnowflakeIdGenerator;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cases every {@link WidgetsTable} must pass, checked against {@link WidgetsSnapshot}.
+ */
+public abstract class AbstractWidgetsTableTest {
+    /**
+     * An empty table with room for 16 widgets.
+     */
+    protected abstract WidgetsTable newTable();
+
+    @Test
+    public void testMatchesSnapshotUnderRandomWrites() {
+        Random random = new Random(13);
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY;
+        WidgetsTable widgets = newTable();
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 0; i < 5_000; i++) {
+            int operation = random.nextInt(10);
+
+            if (operation < 9 || ids.isEmpty()) {
+                String id = (operation < 6 || ids.isEmpty())
+                        ? UUID.randomUUID().toString() : ids.get(random.nextInt(ids.size()));
+                Widget widget = new Widget(id, random.nextInt(4_000) - 2_000, random.nextInt(4_000) - 2_000,
+                        random.nextInt(300), 1 + random.nextInt(600), 1 + random.nextInt(600),
+                        ColumnarWidgets.truncate(LocalDateTime.now()));
+
+                if (!widgets.containsWidget(id)) {
+                    ids.add(id);
+                }
+
+                snapshot = snapshot.withWidget(widget);
+                widgets.put(widget);
+            } else {
+                String id = ids.remove(random.nextInt(ids.size()));
+                snapshot = snapshot.withoutWidget(id);
+                assertTrue(widgets.remove(id));
+            }
+        }
+
+        assertEquals(snapshot.size(), widgets.size());
+        assertEquals(describe(snapshot.getWidgets()), describe(widgets.getWidgets()));
+
+        for (String id : ids) {
+            assertEquals(snapshot.getWidget(id).getZ(), widgets.getWidget(id).getZ());
+        }
+
+        for (int afterZ = -1; afterZ < 6_000; afterZ += 211) {
+            assertEquals(describe(snapshot.getWidgets(afterZ, 30)), describe(widgets.getWidgets(afterZ, 30)));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            int x1 = random.nextInt(4_000) - 2_000, y1 = random.nextInt(4_000) - 2_000;
+            Area area = new Area(x1, y1, x1 + random.nextInt(2_000), y1 + random.nextInt(2_000));
+
+            assertEquals(describe(snapshot.getWidgets(area)), describe(widgets.getWidgets(area)));
+        }
+    }
+
+    @Test
+    public void testShiftIntoFullTable() {
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY;
+        WidgetsTable widgets = newTable();
+
+        for (int i = 0; i < 17; i++) {
+            Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), i, i, 1, 5, 10,
+                    ColumnarWidgets.truncate(LocalDateTime.now()));
+            snapshot = snapshot.withWidget(widget);
+            widgets.put(widget);
+        }
+
+        assertEquals(describe(snapshot.getWidgets()), describe(widgets.getWidgets()));
+    }
+
+    @Test
+    public void testUnknownIds() {
+        WidgetsTable widgets = newTable();
+
+        assertNull(widgets.getWidget("not-a-uuid"));
+        assertNull(widgets.getWidget(UUID.randomUUID().toString()));
+        assertFalse(widgets.remove("not-a-uuid"));
+        assertEquals(1, widgets.nextZ(null));
+    }
+
+    @Test
+    public void testSnowflakeAndUuidIdsOnOneBoard() {
+        WidgetsTable widgets = newTable();
+        Widget snowflakeWidget = new Widget(new SnowflakeIdGenerator(1).nextId(), 1, 2, 1, 5, 10);
+        Widget uuidWidget = new Widget(UUID.randomUUID().toString(), 1, 2, 1, 5, 10);
+        widgets.put(snowflakeWidget);
+        widgets.put(uuidWidget);
+
+        assertEquals(Integer.valueOf(2), widgets.getWidget(snowflakeWidget.getId()).getZ());
+        assertEquals(uuidWidget.getId(), widgets.getWidgets().get(0).getId());
+        assertNull(widgets.getWidget(uuidWidget.getId().toUpperCase()));
+        assertTrue(widgets.remove(snowflakeWidget.getId()));
+        assertEquals(1, widgets.size());
+    }
+
+    private static List<String> describe(Collection<Widget> widgets) {
+        return widgets.stream()
+                .map(widget -> widget.getId() + " " + widget.getX() + " " + widget.getY() + " " + widget.getZ()
+                        + " " + widget.getWidth() + " " + widget.getHeight() + " " + widget.getLastModified())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,27 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ColumnarWidgetsTest extends AbstractWidgetsTableTest {
+    @Override
+    protected WidgetsTable newTable() {
+        return new ColumnarWidgets();
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        ColumnarWidgets widgets = new ColumnarWidgets();
+        Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 3, 5, 10);
+        widgets.put(widget);
+
+        ColumnarWidgets copy = widgets.copy();
+        copy.remove(widget.getId());
+
+        assertEquals(1, widgets.size());
+        assertEquals(0, copy.size());
+    }
+}
@@ -0,0 +1,107 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class MappedWidgetsFileTest {
+    private Path path;
+
+    @Before
+    public void createFile() throws IOException {
+        path = Files.createTempFile("widgets", ".bin");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testReadsMatchSnapshot() throws IOException {
+        Random random = new Random(11);
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY;
+
+        for (int i = 0; i < 2_000; i++) {
+            snapshot = snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), random.nextInt(4_000) - 2_000,
+                    random.nextInt(4_000) - 2_000, random.nextInt(300), 1 + random.nextInt(600),
+                    1 + random.nextInt(600)));
+        }
+
+        MappedWidgetsFile.write(path, snapshot, 42);
+        MappedWidgetsFile file = MappedWidgetsFile.map(path);
+
+        assertEquals(42, file.getVersion());
+        assertEquals(snapshot.size(), file.size());
+        assertEquals(describe(snapshot.getWidgets()), describe(file.getWidgets()));
+
+        for (Widget widget : snapshot.getWidgets()) {
+            assertEquals(describe(Collections.singleton(widget)),
+                    describe(Collections.singleton(file.getWidget(widget.getId()))));
+        }
+
+        assertNull(file.getWidget("missing"));
+
+        for (int afterZ = -1; afterZ < 2_500; afterZ += 97) {
+            assertEquals(describe(snapshot.getWidgets(afterZ, 25)), describe(file.getWidgets(afterZ, 25)));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            int x1 = random.nextInt(4_000) - 2_000, y1 = random.nextInt(4_000) - 2_000;
+            Area area = new Area(x1, y1, x1 + random.nextInt(2_000), y1 + random.nextInt(2_000));
+
+            assertEquals(describe(snapshot.getWidgets(area)), describe(file.getWidgets(area)));
+        }
+    }
+
+    @Test
+    public void testEmptyBoard() throws IOException {
+        MappedWidgetsFile.write(path, WidgetsSnapshot.EMPTY, 0);
+        MappedWidgetsFile file = MappedWidgetsFile.map(path);
+
+        assertTrue(file.getWidgets().isEmpty());
+        assertNull(file.getWidget("missing"));
+        assertTrue(file.getWidgets(0, 10).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedFileIsRejected() throws IOException {
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 3, 5, 10));
+        MappedWidgetsFile.write(path, snapshot, 1);
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+
+        MappedWidgetsFile.map(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void testIdLongerThanRecordIsRejected() throws IOException {
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY.withWidget(
+                new Widget("0123456789-0123456789-0123456789-0123456789", 1, 2, 3, 5, 10));
+
+        MappedWidgetsFile.write(path, snapshot, 1);
+    }
+
+    private static List<String> describe(Collection<Widget> widgets) {
+        return widgets.stream()
+                .map(widget -> widget.getId() + " " + widget.getX() + " " + widget.getY() + " " + widget.getZ()
+                        + " " + widget.getWidth() + " " + widget.getHeight() + " " + widget.getLastModified())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,58 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OffHeapWidgetsTest extends AbstractWidgetsTableTest {
+    @Override
+    protected WidgetsTable newTable() {
+        return new OffHeapWidgets(16);
+    }
+
+    @Test
+    public void testMemoryUsage() {
+        OffHeapWidgets widgets = new OffHeapWidgets(16);
+        long emptyBytes = widgets.allocatedBytes();
+
+        for (int i = 0; i < 17; i++) {
+            widgets.put(new Widget(WidgetIdGenerator.UUIDS.nextId(), i, i, i, 5, 10));
+        }
+
+        assertEquals(24, widgets.capacity());
+        assertTrue(widgets.allocatedBytes() > emptyBytes);
+        assertEquals(17L * (OffHeapWidgets.RECORD_SIZE + 4) + 64 * 4, widgets.usedBytes());
+    }
+
+    @Test
+    public void testReserveGrowsOnce() {
+        OffHeapWidgets widgets = new OffHeapWidgets(16);
+        widgets.reserve(100);
+
+        assertEquals(100, widgets.capacity());
+
+        for (int i = 0; i < 100; i++) {
+            widgets.put(new Widget(WidgetIdGenerator.UUIDS.nextId(), i, i, 1, 5, 10));
+        }
+
+        assertEquals(100, widgets.capacity());
+    }
+
+    @Test
+    public void testFailedReserveLeavesBoardAsItWas() {
+        OffHeapWidgets widgets = new OffHeapWidgets(16);
+        Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 1, 5, 10);
+        widgets.put(widget);
+
+        try {
+            widgets.reserve(Integer.MAX_VALUE);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(16, widgets.capacity());
+        assertEquals(widget.getZ(), widgets.getWidget(widget.getId()).getZ());
+    }
+}
@@ -0,0 +1,88 @@
+package com.miro.board.storage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class PersistentSortedMapTest {
+    @Test
+    public void testRandomOperationsMatchTreeMap() {
+        Random random = new Random(42);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        PersistentSortedMap<Integer, String> actual = PersistentSortedMap.empty();
+
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(2_000);
+
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.remove(key);
+            } else {
+                expected.put(key, "v" + i);
+                actual = actual.put(key, "v" + i);
+            }
+        }
+
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(actual.values()));
+        assertEquals(expected.lastEntry().getValue(), actual.lastValue());
+
+        for (int key = 0; key < 2_000; key++) {
+            assertEquals(expected.get(key), actual.get(key));
+            assertEquals((expected.lowerEntry(key) == null) ? null : expected.lowerEntry(key).getValue(),
+                    actual.lowerValue(key));
+        }
+    }
+
+    @Test
+    public void testOldVersionIsNotAffectedByUpdates() {
+        PersistentSortedMap<Integer, String> before = PersistentSortedMap.<Integer, String>empty()
+                .put(1, "a")
+                .put(2, "b");
+
+        PersistentSortedMap<Integer, String> after = before.put(3, "c").remove(1).put(2, "B");
+
+        assertEquals(2, before.size());
+        assertEquals("a", before.get(1));
+        assertEquals("b", before.get(2));
+        assertNull(before.get(3));
+
+        assertEquals(2, after.size());
+        assertNull(after.get(1));
+        assertEquals("B", after.get(2));
+        assertEquals("c", after.get(3));
+    }
+
+    @Test
+    public void testRemoveOfMissingKeyReturnsSameMap() {
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.<Integer, String>empty().put(1, "a");
+
+        assertSame(map, map.remove(2));
+    }
+
+    @Test
+    public void testValuesFromStartsAtCeilingKey() {
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.empty();
+
+        for (int key = 0; key < 100; key += 10) {
+            map = map.put(key, "v" + key);
+        }
+
+        List<String> values = new ArrayList<>();
+        Iterator<String> iterator = map.valuesFrom(35);
+
+        while (iterator.hasNext()) {
+            values.add(iterator.next());
+        }
+
+        assertEquals(6, values.size());
+        assertEquals("v40", values.get(0));
+        assertEquals("v90", values.get(5));
+    }
+}
@@ -0,0 +1,123 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import com.miro.board.model.WidgetsChanges;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class WidgetsChangeLogTest {
+    private final WidgetsChangeLog changeLog = new WidgetsChangeLog(16);
+    private WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY;
+
+    @Test
+    public void testChangesAreClassifiedSinceVersion() {
+        Widget bottom = put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 5, 5), true);
+        Widget updated = put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 2, 5, 5), true);
+        Widget pushed = put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 3, 5, 5), true);
+        Widget deleted = put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 10, 5, 5), true);
+        long version = snapshot.getVersion();
+
+        put(new Widget(updated.getId(), 7, 7, 2, 5, 5), false);
+        Widget created = put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 3, 5, 5), true);
+        delete(deleted.getId());
+
+        WidgetsChanges changes = changeLog.changesSince(version, snapshot);
+
+        assertFalse(changes.isResync());
+        assertEquals(snapshot.getVersion(), changes.getVersion());
+        assertEquals(Collections.singletonList(created.getId()), ids(changes.getCreated()));
+        assertEquals(Collections.singletonList(updated.getId()), ids(changes.getUpdated()));
+        assertEquals(Collections.singletonList(pushed.getId()), ids(changes.getShifted()));
+        assertEquals(Integer.valueOf(4), changes.getShifted().get(0).getZ());
+        assertEquals(Collections.singletonList(deleted.getId()), changes.getDeleted());
+        assertFalse(ids(changes.getShifted()).contains(bottom.getId()));
+    }
+
+    @Test
+    public void testCascadeReportsEveryPushedWidget() {
+        List<Widget> run = Arrays.asList(put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 5, 5), true),
+                put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 2, 5, 5), true), put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 3, 5, 5), true));
+        Widget above = put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 5, 5, 5), true);
+        long version = snapshot.getVersion();
+
+        put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 5, 5), true);
+
+        WidgetsChanges changes = changeLog.changesSince(version, snapshot);
+
+        assertEquals(ids(run), ids(changes.getShifted()));
+        assertEquals(Arrays.asList(2, 3, 4),
+                changes.getShifted().stream().map(Widget::getZ).collect(Collectors.toList()));
+        assertFalse(ids(changes.getShifted()).contains(above.getId()));
+    }
+
+    @Test
+    public void testWidgetCreatedAndDeletedSinceVersionIsLeftOut() {
+        long version = snapshot.getVersion();
+
+        delete(put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 5, 5), true).getId());
+
+        WidgetsChanges changes = changeLog.changesSince(version, snapshot);
+
+        assertTrue(changes.isEmpty());
+        assertEquals(snapshot.getVersion(), changes.getVersion());
+    }
+
+    @Test
+    public void testCurrentVersionHasNoChanges() {
+        put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 5, 5), true);
+
+        WidgetsChanges changes = changeLog.changesSince(snapshot.getVersion(), snapshot);
+
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void testUnknownVersionNeedsResync() {
+        put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 5, 5), true);
+
+        assertTrue(changeLog.changesSince(-1, snapshot).isResync());
+        assertTrue(changeLog.changesSince(snapshot.getVersion() + 1, snapshot).isResync());
+        assertEquals(1, changeLog.changesSince(-1, snapshot).getCreated().size());
+    }
+
+    @Test
+    public void testTruncatedLogNeedsResync() {
+        put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 5, 5), true);
+        long version = snapshot.getVersion();
+
+        for (int i = 0; i < 16; i++) {
+            put(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 5, 5), true);
+        }
+
+        WidgetsChanges changes = changeLog.changesSince(version - 1, snapshot);
+
+        assertTrue(changes.isResync());
+        assertEquals(17, changes.getCreated().size());
+        assertFalse(changeLog.changesSince(version, snapshot).isResync());
+    }
+
+    private Widget put(Widget widget, boolean created) {
+        WidgetsSnapshot newSnapshot = snapshot.withWidget(widget);
+        changeLog.recordPut(snapshot, newSnapshot, widget, created);
+        snapshot = newSnapshot;
+
+        return widget;
+    }
+
+    private void delete(String id) {
+        WidgetsSnapshot newSnapshot = snapshot.withoutWidget(id);
+        changeLog.recordDelete(snapshot, newSnapshot, id);
+        snapshot = newSnapshot;
+    }
+
+    private static List<String> ids(List<Widget> widgets) {
+        return widgets.stream().map(Widget::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,144 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class WidgetsLogTest {
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("widgets-log");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException {
+        WidgetsLog log = WidgetsLog.open(directory, FsyncPolicy.PER_BATCH, 10, 1_000);
+        WidgetsSnapshot widgets = log.recover();
+
+        Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 3, 5, 10);
+        log.put(widget);
+        log.endBatch(widgets = widgets.withWidget(widget));
+
+        // A clean close folds the log into a snapshot, so keep the segment as a crash would leave it
+        Path segment = segments().get(0);
+        byte[] written = Files.readAllBytes(segment);
+        log.close();
+
+        Files.delete(directory.resolve("snapshot.bin"));
+        Files.write(segment, written);
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        long tornSize = Files.size(segment);
+
+        WidgetsLog recoveredLog = WidgetsLog.open(directory, FsyncPolicy.PER_BATCH, 10, 1_000);
+        WidgetsSnapshot recovered = recoveredLog.recover();
+
+        assertEquals(1, recovered.size());
+        assertEquals(widget.getLastModified(), recovered.getWidget(widget.getId()).getLastModified());
+        assertEquals(tornSize - 7, Files.size(segment));
+
+        Widget otherWidget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 1, 2, 3, 5, 10);
+        recoveredLog.put(otherWidget);
+        recoveredLog.endBatch(recovered.withWidget(otherWidget));
+        recoveredLog.close();
+
+        WidgetsLog reopenedLog = WidgetsLog.open(directory, FsyncPolicy.PER_BATCH, 10, 1_000);
+        WidgetsSnapshot reopened = reopenedLog.recover();
+        reopenedLog.close();
+
+        assertEquals(2, reopened.size());
+        assertEquals(Integer.valueOf(4), reopened.getWidget(widget.getId()).getZ());
+        assertEquals(otherWidget.getLastModified(), reopened.getWidget(widget.getId()).getLastModified());
+    }
+
+    @Test
+    public void testSnapshotReplacesCoveredSegments() throws IOException {
+        WidgetsLog log = WidgetsLog.open(directory, FsyncPolicy.PER_BATCH, 10, 5);
+        WidgetsSnapshot widgets = log.recover();
+
+        for (int i = 0; i < 12; i++) {
+            Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), i, i, 1, 5, 10);
+            log.put(widget);
+            widgets = widgets.withWidget(widget);
+            log.endBatch(widgets);
+        }
+
+        log.close();
+
+        assertTrue(Files.exists(directory.resolve("snapshot.bin")));
+        assertTrue(segments().isEmpty());
+
+        WidgetsLog recoveredLog = WidgetsLog.open(directory, FsyncPolicy.PER_BATCH, 10, 5);
+        MappedWidgetsFile mapped = recoveredLog.mapSnapshot();
+        WidgetsSnapshot recovered = recoveredLog.recover();
+        recoveredLog.close();
+
+        assertEquals(12, mapped.getVersion());
+        assertEquals(ids(widgets), ids(recovered));
+    }
+
+    @Test
+    public void testSnapshotFailureKeepsLog() throws IOException {
+        WidgetsLog log = WidgetsLog.open(directory, FsyncPolicy.PER_BATCH, 10, 2);
+        WidgetsSnapshot widgets = log.recover();
+        Widget longIdWidget = new Widget("0123456789-0123456789-0123456789-0123456789", 1, 2, 1, 5, 10);
+
+        log.put(longIdWidget);
+        log.endBatch(widgets = widgets.withWidget(longIdWidget));
+
+        for (int i = 0; i < 4; i++) {
+            Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), i, i, i + 2, 5, 10);
+            log.put(widget);
+            log.endBatch(widgets = widgets.withWidget(widget));
+        }
+
+        log.close();
+
+        assertFalse(Files.exists(directory.resolve("snapshot.bin")));
+        assertFalse(Files.exists(directory.resolve("snapshot.bin.tmp")));
+        assertFalse(segments().isEmpty());
+
+        WidgetsLog recoveredLog = WidgetsLog.open(directory, FsyncPolicy.PER_BATCH, 10, 2);
+        WidgetsSnapshot recovered = recoveredLog.recover();
+        recoveredLog.close();
+
+        assertEquals(ids(widgets), ids(recovered));
+        assertEquals(longIdWidget.getLastModified(), recovered.getWidget(longIdWidget.getId()).getLastModified());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(path -> path.getFileName().toString().endsWith(".log"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> ids(WidgetsSnapshot widgets) {
+        return widgets.getWidgets().stream()
+                .map(Widget::getId)
+                .collect(Collectors.toList());
+    }
+}
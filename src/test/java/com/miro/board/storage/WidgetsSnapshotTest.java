@@ -0,0 +1,303 @@
+package com.miro.board.storage;
+
+import com.miro.board.model.Area;
+import com.miro.board.model.Widget;
+import com.miro.board.model.WidgetIdGenerator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class WidgetsSnapshotTest {
+    @Test
+    public void testGetWidgetsInAreaMatchesBruteForce() {
+        Random random = new Random(7);
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY;
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 0; i < 5_000; i++) {
+            int operation = random.nextInt(10);
+
+            if (operation < 6 || ids.isEmpty()) {
+                Widget widget = randomWidget(random, WidgetIdGenerator.UUIDS.nextId());
+                snapshot = snapshot.withWidget(widget);
+                ids.add(widget.getId());
+            } else if (operation < 9) {
+                String id = ids.get(random.nextInt(ids.size()));
+                snapshot = snapshot.withWidget(randomWidget(random, id));
+            } else {
+                String id = ids.remove(random.nextInt(ids.size()));
+                snapshot = snapshot.withoutWidget(id);
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            int x1 = random.nextInt(4_000) - 2_000, y1 = random.nextInt(4_000) - 2_000;
+            Area area = new Area(x1, y1, x1 + random.nextInt(2_000), y1 + random.nextInt(2_000));
+
+            List<String> expected = snapshot.getWidgets().stream()
+                    .filter(area::contains)
+                    .map(Widget::getId)
+                    .collect(Collectors.toList());
+
+            List<String> actual = snapshot.getWidgets(area).stream()
+                    .map(Widget::getId)
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testGetWidgetsInAreaIncludesWidgetsTouchingBorders() {
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY
+                .withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 100, 100))
+                .withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 50, 2, 100, 100))
+                .withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 50, 50, 3, 100, 100));
+
+        List<Widget> widgets = snapshot.getWidgets(new Area(0, 0, 100, 150));
+
+        assertEquals(2, widgets.size());
+        assertEquals(Integer.valueOf(1), widgets.get(0).getZ());
+        assertEquals(Integer.valueOf(2), widgets.get(1).getZ());
+    }
+
+    @Test
+    public void testInsertShiftsOnlyContiguousRun() {
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY;
+
+        for (int z : new int[]{1, 2, 3, 4, 5, 7, 8, 9}) {
+            snapshot = snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, z, 10, 10));
+        }
+
+        List<Widget> before = new ArrayList<>(snapshot.getWidgets());
+        Widget newWidget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 3, 10, 10);
+
+        WidgetsSnapshot newSnapshot = snapshot.withWidget(newWidget);
+        List<Widget> after = new ArrayList<>(newSnapshot.getWidgets());
+
+        assertEquals(9, after.size());
+        assertEquals(3, newSnapshot.getShiftedWidgets() - snapshot.getShiftedWidgets());
+        assertSame(before.get(0), after.get(0));
+        assertSame(before.get(1), after.get(1));
+        assertSame(newWidget, after.get(2));
+
+        for (int i = 2; i < 5; i++) {
+            assertEquals(before.get(i).getId(), after.get(i + 1).getId());
+            assertEquals(Integer.valueOf(before.get(i).getZ() + 1), after.get(i + 1).getZ());
+        }
+
+        for (int i = 5; i < 8; i++) {
+            assertSame(before.get(i), after.get(i + 1));
+        }
+    }
+
+    @Test
+    public void testInsertIntoGapShiftsNothing() {
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY;
+
+        for (int z : new int[]{1, 2, 4, 5}) {
+            snapshot = snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, z, 10, 10));
+        }
+
+        List<Widget> before = new ArrayList<>(snapshot.getWidgets());
+        List<Widget> after = new ArrayList<>(snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 3, 10, 10)).getWidgets());
+
+        assertSame(before.get(0), after.get(0));
+        assertSame(before.get(1), after.get(1));
+        assertEquals(Integer.valueOf(3), after.get(2).getZ());
+        assertSame(before.get(2), after.get(3));
+        assertSame(before.get(3), after.get(4));
+    }
+
+    @Test
+    public void testUpdateIntoRunLeavesGapAtOldPosition() {
+        Widget widget1 = new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 3, 10, 10);
+        Widget widget2 = new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 4, 10, 10);
+        Widget widget3 = new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 5, 10, 10);
+
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY
+                .withWidget(widget1)
+                .withWidget(widget2)
+                .withWidget(widget3)
+                .withWidget(new Widget(widget2.getId(), 0, 0, 3, 10, 10));
+
+        assertEquals(Integer.valueOf(3), snapshot.getWidget(widget2.getId()).getZ());
+        assertEquals(Integer.valueOf(4), snapshot.getWidget(widget1.getId()).getZ());
+        assertSame(widget3, snapshot.getWidget(widget3.getId()));
+    }
+
+    @Test
+    public void testZOrderMatchesEagerCascade() {
+        Random random = new Random(11);
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY;
+        TreeMap<Integer, String> expectedIdsByZ = new TreeMap<>();
+        Map<String, Integer> expectedZById = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            int operation = random.nextInt(10);
+            int z = random.nextInt(200);
+
+            if (operation < 5 || ids.isEmpty()) {
+                Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, z, 10, 10);
+                snapshot = snapshot.withWidget(widget);
+                ids.add(widget.getId());
+                insertEagerly(expectedIdsByZ, expectedZById, widget.getId(), z);
+            } else if (operation < 8) {
+                String id = ids.get(random.nextInt(ids.size()));
+                snapshot = snapshot.withWidget(new Widget(id, 0, 0, z, 10, 10));
+                expectedIdsByZ.remove(expectedZById.remove(id));
+                insertEagerly(expectedIdsByZ, expectedZById, id, z);
+            } else {
+                String id = ids.remove(random.nextInt(ids.size()));
+                snapshot = snapshot.withoutWidget(id);
+                expectedIdsByZ.remove(expectedZById.remove(id));
+            }
+
+            if (i % 1_000 == 0) {
+                assertSameOrder(expectedIdsByZ, snapshot);
+            }
+        }
+
+        assertSameOrder(expectedIdsByZ, snapshot);
+
+        for (Map.Entry<String, Integer> expected : expectedZById.entrySet()) {
+            assertEquals(expected.getValue(), snapshot.getWidget(expected.getKey()).getZ());
+        }
+    }
+
+    @Test
+    public void testRepeatedInsertsBetweenNeighboursKeepOrder() {
+        Widget bottom = new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 10, 10);
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY.withWidget(bottom);
+        List<String> expectedIds = new ArrayList<>();
+
+        for (int i = 0; i < 200; i++) {
+            Widget widget = new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 2, 10, 10);
+            snapshot = snapshot.withWidget(widget);
+            expectedIds.add(0, widget.getId());
+        }
+
+        expectedIds.add(0, bottom.getId());
+
+        List<Widget> widgets = new ArrayList<>(snapshot.getWidgets());
+
+        for (int i = 0; i < widgets.size(); i++) {
+            assertEquals(expectedIds.get(i), widgets.get(i).getId());
+            assertEquals(Integer.valueOf(i + 1), widgets.get(i).getZ());
+            assertEquals(Integer.valueOf(i + 1), snapshot.getWidget(expectedIds.get(i)).getZ());
+        }
+
+        assertTrue(snapshot.getRenumberedWidgets() > 0);
+    }
+
+    @Test
+    public void testRenumberingStaysAroundInsertionPoint() {
+        List<Widget> widgets = new ArrayList<>();
+
+        for (int z = 1; z <= 10_000; z++) {
+            widgets.add(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, z * 2, 10, 10));
+        }
+
+        WidgetsSnapshot snapshot = WidgetsSnapshot.of(widgets);
+
+        // Every insert lands right above the same widget, so the keys next to it run out over and over
+        for (int i = 0; i < 500; i++) {
+            snapshot = snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 10_001, 10, 10));
+        }
+
+        assertTrue(snapshot.getRenumberedWidgets() > 0);
+        assertTrue("Renumbered " + snapshot.getRenumberedWidgets(), snapshot.getRenumberedWidgets() < 10_000);
+
+        int previousZ = 0;
+
+        for (Widget widget : snapshot.getWidgets()) {
+            assertTrue(widget.getZ() > previousZ);
+            assertEquals(widget.getZ(), snapshot.getWidget(widget.getId()).getZ());
+            previousZ = widget.getZ();
+        }
+    }
+
+    @Test
+    public void testShiftedWidgetIsMaterializedOnce() {
+        Widget bottom = new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 10, 10);
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY.withWidget(bottom);
+
+        for (int i = 0; i < 100; i++) {
+            snapshot = snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 10, 10));
+        }
+
+        Widget shifted = snapshot.getWidget(bottom.getId());
+
+        assertEquals(Integer.valueOf(101), shifted.getZ());
+        assertSame(shifted, snapshot.getWidget(bottom.getId()));
+
+        List<Widget> firstRead = new ArrayList<>(snapshot.getWidgets());
+        List<Widget> secondRead = new ArrayList<>(snapshot.getWidgets());
+
+        for (int i = 0; i < firstRead.size(); i++) {
+            assertSame(firstRead.get(i), secondRead.get(i));
+        }
+    }
+
+    @Test
+    public void testEveryChangeAdvancesVersionByOne() {
+        Widget bottom = new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 1, 10, 10);
+        WidgetsSnapshot snapshot = WidgetsSnapshot.EMPTY.withWidget(bottom);
+
+        for (int i = 0; i < 200; i++) {
+            snapshot = snapshot.withWidget(new Widget(WidgetIdGenerator.UUIDS.nextId(), 0, 0, 2, 10, 10));
+        }
+
+        assertEquals(201, snapshot.getVersion());
+        assertEquals(202, snapshot.withoutWidget(bottom.getId()).getVersion());
+        assertSame(snapshot, snapshot.withoutWidget("missing"));
+        assertEquals(7, WidgetsSnapshot.of(new ArrayList<>(snapshot.getWidgets()), 7).getVersion());
+    }
+
+    private static void insertEagerly(TreeMap<Integer, String> idsByZ, Map<String, Integer> zById,
+                                      String id, int z) {
+        int lastInRun = z - 1;
+
+        while (idsByZ.containsKey(lastInRun + 1)) {
+            lastInRun++;
+        }
+
+        for (int shiftedZ = lastInRun; shiftedZ >= z; shiftedZ--) {
+            String shiftedId = idsByZ.remove(shiftedZ);
+            idsByZ.put(shiftedZ + 1, shiftedId);
+            zById.put(shiftedId, shiftedZ + 1);
+        }
+
+        idsByZ.put(z, id);
+        zById.put(id, z);
+    }
+
+    private static void assertSameOrder(TreeMap<Integer, String> expectedIdsByZ, WidgetsSnapshot snapshot) {
+        List<Widget> widgets = new ArrayList<>(snapshot.getWidgets());
+
+        assertEquals(expectedIdsByZ.size(), widgets.size());
+        assertEquals(expectedIdsByZ.size(), snapshot.size());
+
+        int i = 0;
+
+        for (Map.Entry<Integer, String> expected : expectedIdsByZ.entrySet()) {
+            assertEquals(expected.getValue(), widgets.get(i).getId());
+            assertEquals(expected.getKey(), widgets.get(i).getZ());
+            i++;
+        }
+    }
+
+    private static Widget randomWidget(Random random, String id) {
+        return new Widget(id, random.nextInt(4_000) - 2_000, random.nextInt(4_000) - 2_000,
+                random.nextInt(300), 1 + random.nextInt(600), 1 + random.nextInt(600));
+    }
+}